@@ -0,0 +1,134 @@
+package org.depp.devbase.ui;
+
+import android.content.Context;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.inputmethod.InputMethodManager;
+import android.widget.EditText;
+import android.widget.FrameLayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link KeyboardDismisser}点击EditText内外都不分配对象，并记录与BaseActivity原来的ACTION_DOWN处理的耗时对比
+ */
+@RunWith(AndroidJUnit4.class)
+public class KeyboardDismisserBenchmark {
+
+    private static final String TAG = "KeyboardDismisserBench";
+    private static final int WARMUP = 10000;
+    private static final int ITERATIONS = 200000;
+
+    @Test
+    public void touchDownInsideFocusedEditText() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            FrameLayout root = createRoot();
+            KeyboardDismisser dismisser = new KeyboardDismisser(root);
+            dismisser.attach();
+            MotionEvent event = MotionEvent.obtain(0, SystemClock.uptimeMillis(), MotionEvent.ACTION_DOWN, 50, 50, 0);
+
+            for (int i = 0; i < WARMUP; i++) {
+                dismisser.onTouchDown(event);
+                legacyShouldHide(root, event);
+            }
+            assertEquals(0, countAllocations(dismisser, event, false));
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                assertFalse(dismisser.onTouchDown(event));
+            }
+            long fast = (System.nanoTime() - start) / ITERATIONS;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                assertFalse(legacyShouldHide(root, event));
+            }
+            long legacy = (System.nanoTime() - start) / ITERATIONS;
+            // 耗时只作记录，受设备和负载影响，不做断言
+            Log.i(TAG, "KeyboardDismisser " + fast + "ns/op, legacy " + legacy + "ns/op");
+
+            event.recycle();
+            dismisser.detach();
+        });
+    }
+
+    @Test
+    public void touchDownOutsideFocusedEditText() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            FrameLayout root = createRoot();
+            KeyboardDismisser dismisser = new KeyboardDismisser(root);
+            dismisser.attach();
+            MotionEvent event = MotionEvent.obtain(0, SystemClock.uptimeMillis(), MotionEvent.ACTION_DOWN, 800, 1000, 0);
+
+            for (int i = 0; i < WARMUP; i++) {
+                dismisser.onTouchDown(event);
+            }
+            assertEquals(0, countAllocations(dismisser, event, true));
+
+            event.recycle();
+            dismisser.detach();
+        });
+    }
+
+    /**
+     * 根布局中只有一个获取焦点的EditText，位于(0, 0, 400, 100)
+     */
+    private static FrameLayout createRoot() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        FrameLayout root = new FrameLayout(context);
+        EditText editText = new EditText(context);
+        root.addView(editText, new FrameLayout.LayoutParams(400, 100));
+        root.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+        root.layout(0, 0, 1080, 1920);
+        editText.setFocusableInTouchMode(true);
+        assertTrue(editText.requestFocus());
+        return root;
+    }
+
+    /**
+     * 统计当前线程在{@link KeyboardDismisser#onTouchDown(MotionEvent)}中分配的对象数
+     *
+     * @param hide 期望的返回值，循环中只比较不拼接字符串，避免断言本身分配对象
+     */
+    @SuppressWarnings("deprecation")
+    private static int countAllocations(KeyboardDismisser dismisser, MotionEvent event, boolean hide) {
+        int mismatches = 0;
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (dismisser.onTouchDown(event) != hide) {
+                mismatches++;
+            }
+        }
+        Debug.stopAllocCounting();
+        int allocations = Debug.getThreadAllocCount();
+        assertEquals(0, mismatches);
+        return allocations;
+    }
+
+    /**
+     * BaseActivity原来的实现：每次获取焦点、分配int[]、获取InputMethodManager
+     */
+    private static boolean legacyShouldHide(View root, MotionEvent event) {
+        View v = root.findFocus();
+        if (v instanceof EditText) {
+            int[] l = {0, 0};
+            v.getLocationInWindow(l);
+            int left = l[0], top = l[1], bottom = top + v.getHeight(), right = left + v.getWidth();
+            boolean hide = !(event.getX() > left) || !(event.getX() < right) || !(event.getY() > top) || !(event.getY() < bottom);
+            InputMethodManager imm = (InputMethodManager) root.getContext().getSystemService(Context.INPUT_METHOD_SERVICE);
+            return hide && imm != null;
+        }
+        return false;
+    }
+}
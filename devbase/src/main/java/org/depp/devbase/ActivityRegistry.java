@@ -0,0 +1,304 @@
+package org.depp.devbase;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.support.annotation.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 受管理Activity的注册表
+ * <p>
+ * 1.ConcurrentHashMap按Activity身份分段加锁，添加、移除都是O(1)，可以在任意线程调用。
+ * 2.只弱引用Activity，泄漏的Activity可以被回收，回收后自动移除。
+ * 3.通过ActivityLifecycleCallbacks跟踪状态，前台判断、栈顶Activity、各状态数量都只是读取volatile字段。
+ * </p>
+ */
+public class ActivityRegistry implements Application.ActivityLifecycleCallbacks {
+
+    public static final int STATE_CREATED = 0;
+    public static final int STATE_STARTED = 1;
+    public static final int STATE_RESUMED = 2;
+
+    private final ConcurrentHashMap<ActivityKey, Record> records = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Activity> collectedQueue = new ReferenceQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger createdCount = new AtomicInteger();
+    private final AtomicInteger startedCount = new AtomicInteger();
+    private final AtomicInteger resumedCount = new AtomicInteger();
+
+    private volatile Record top;
+    private volatile Record resumed;
+
+    /**
+     * 添加Activity，重复添加会被忽略
+     *
+     * @param activity ~
+     * @return 添加后的数量
+     */
+    public int add(Activity activity) {
+        purgeCollected();
+        ActivityKey key = new ActivityKey(activity, collectedQueue);
+        Record record = new Record(key, sequence.incrementAndGet());
+        if (records.putIfAbsent(key, record) == null) {
+            createdCount.incrementAndGet();
+            top = record;
+        }
+        return createdCount.get();
+    }
+
+    /**
+     * 移除Activity
+     *
+     * @param activity ~
+     * @return 移除后的数量
+     */
+    public int remove(Activity activity) {
+        purgeCollected();
+        Record record = records.remove(new ActivityKey(activity, null));
+        if (record != null) {
+            onRemoved(record);
+        }
+        return createdCount.get();
+    }
+
+    /**
+     * 是否有Activity处于started状态（对用户可见）
+     */
+    public boolean isForeground() {
+        return startedCount.get() > 0;
+    }
+
+    /**
+     * 受管理的Activity数量
+     */
+    public int getCount() {
+        return createdCount.get();
+    }
+
+    /**
+     * 处于指定状态或更靠前状态的Activity数量
+     *
+     * @param state {@link #STATE_CREATED}, {@link #STATE_STARTED}, {@link #STATE_RESUMED}
+     * @return ~
+     */
+    public int getCount(int state) {
+        switch (state) {
+            case STATE_RESUMED:
+                return resumedCount.get();
+            case STATE_STARTED:
+                return startedCount.get();
+            default:
+                return createdCount.get();
+        }
+    }
+
+    public boolean isEmpty() {
+        return createdCount.get() == 0;
+    }
+
+    /**
+     * 最近创建或resume的Activity
+     */
+    @Nullable
+    public Activity getTopActivity() {
+        Record record = top;
+        return record == null ? null : record.key.get();
+    }
+
+    /**
+     * 当前resume的Activity，没有则返回null
+     */
+    @Nullable
+    public Activity getResumedActivity() {
+        Record record = resumed;
+        return record == null || record.state != STATE_RESUMED ? null : record.key.get();
+    }
+
+    /**
+     * 按栈的逆序（最后创建的在前）返回所有还没被回收的Activity
+     *
+     * @return ~
+     */
+    public List<Activity> snapshotReversed() {
+        purgeCollected();
+        List<Record> sorted = new ArrayList<>(records.values());
+        Collections.sort(sorted, (left, right) -> Long.compare(right.createSequence, left.createSequence));
+        List<Activity> activities = new ArrayList<>(sorted.size());
+        for (Record record : sorted) {
+            Activity activity = record.key.get();
+            if (activity != null) {
+                activities.add(activity);
+            }
+        }
+        return activities;
+    }
+
+    /**
+     * 按栈的逆序finish所有Activity并清空
+     */
+    public void finishAll() {
+        for (Activity activity : snapshotReversed()) {
+            activity.finish();
+        }
+        for (Record record : new ArrayList<>(records.values())) {
+            if (records.remove(record.key) != null) {
+                onRemoved(record);
+            }
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+        setState(activity, STATE_STARTED);
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+        setState(activity, STATE_RESUMED);
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+        setState(activity, STATE_STARTED);
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+        setState(activity, STATE_CREATED);
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+        // 没有主动调用removeActivity的Activity在这里移除
+        remove(activity);
+    }
+
+    private void setState(Activity activity, int state) {
+        Record record = records.get(new ActivityKey(activity, null));
+        if (record == null) {
+            return;
+        }
+        synchronized (record) {
+            if (record.removed) {
+                return;
+            }
+            updateCounts(record.state, state);
+            record.state = state;
+        }
+        if (state == STATE_RESUMED) {
+            resumed = record;
+            top = record;
+        }
+    }
+
+    private void onRemoved(Record record) {
+        synchronized (record) {
+            record.removed = true;
+            updateCounts(record.state, -1);
+        }
+        createdCount.decrementAndGet();
+        if (resumed == record) {
+            resumed = null;
+        }
+        if (top == record) {
+            top = findLatest();
+        }
+    }
+
+    private void updateCounts(int oldState, int newState) {
+        if (oldState < STATE_STARTED && newState >= STATE_STARTED) {
+            startedCount.incrementAndGet();
+        } else if (oldState >= STATE_STARTED && newState < STATE_STARTED) {
+            startedCount.decrementAndGet();
+        }
+        if (oldState != STATE_RESUMED && newState == STATE_RESUMED) {
+            resumedCount.incrementAndGet();
+        } else if (oldState == STATE_RESUMED && newState != STATE_RESUMED) {
+            resumedCount.decrementAndGet();
+        }
+    }
+
+    private Record findLatest() {
+        Record latest = null;
+        for (Record record : records.values()) {
+            if (latest == null || record.createSequence > latest.createSequence) {
+                latest = record;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * 移除已经被回收的Activity
+     */
+    private void purgeCollected() {
+        Reference<? extends Activity> reference;
+        while ((reference = collectedQueue.poll()) != null) {
+            Record record = records.remove(reference);
+            if (record != null) {
+                onRemoved(record);
+            }
+        }
+    }
+
+    /**
+     * 以Activity身份（而不是equals）作为Key的弱引用
+     */
+    private static final class ActivityKey extends WeakReference<Activity> {
+
+        private final int hash;
+
+        ActivityKey(Activity activity, @Nullable ReferenceQueue<Activity> queue) {
+            super(activity, queue);
+            this.hash = System.identityHashCode(activity);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ActivityKey)) {
+                return false;
+            }
+            Activity activity = get();
+            return activity != null && activity == ((ActivityKey) obj).get();
+        }
+    }
+
+    private static final class Record {
+
+        final ActivityKey key;
+        final long createSequence;
+        volatile int state = STATE_CREATED;
+        boolean removed;
+
+        Record(ActivityKey key, long createSequence) {
+            this.key = key;
+            this.createSequence = createSequence;
+        }
+    }
+}
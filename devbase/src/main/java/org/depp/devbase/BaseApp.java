@@ -2,21 +2,30 @@ package org.depp.devbase;
 
 import android.app.Activity;
 import android.app.Application;
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
+import android.support.annotation.LayoutRes;
 
-import com.blankj.rxbus.RxBus;
-import com.blankj.utilcode.util.NetworkUtils;
+import com.trello.rxlifecycle2.LifecycleProvider;
+import com.trello.rxlifecycle2.android.ActivityEvent;
 
-import org.depp.devbase.common.Constant;
+import org.depp.devbase.bus.EventBus;
+import org.depp.devbase.network.HttpClientFactory;
+import org.depp.devbase.network.NetworkMonitor;
+import org.depp.devbase.network.NetworkState;
+import org.depp.devbase.permission.PermissionUtils;
+import org.depp.devbase.startup.StartupComponent;
+import org.depp.devbase.startup.StartupReport;
+import org.depp.devbase.startup.StartupRunner;
+import org.depp.devbase.ui.ActivityScope;
+import org.depp.devbase.ui.InflationPool;
 import org.depp.devbase.utils.PrefUtil;
-import org.reactivestreams.Subscriber;
 
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
 
 /**
  * Base Application
@@ -29,97 +38,238 @@ import java.util.List;
 
 public class BaseApp extends Application {
 
-    protected List<Activity> activityList = new ArrayList<>();
-    protected BaseApp.NetworkBroadcast networkBroadcast;
+    protected final ActivityRegistry activityRegistry = new ActivityRegistry();
+    protected NetworkMonitor networkMonitor;
+    private final ConcurrentHashMap<String, ActivityScope> activityScopes = new ConcurrentHashMap<>();
+    private InflationPool inflationPool;
 
     public void onCreate() {
         super.onCreate();
-        PrefUtil.init(this);
+        registerActivityLifecycleCallbacks(activityRegistry);
+        PrefUtil.init(this, getPreloadPreferences());
+        if (usePrefWriteBehind()) {
+            PrefUtil.enableWriteBehind();
+        }
+        HttpClientFactory.init(onCreateHttpClient(new HttpClientFactory.Builder()
+                .setCacheDir(new File(getCacheDir(), "http"))
+                .setResponseCacheDir(new File(getCacheDir(), "response"))
+                .setOutboxDir(new File(getFilesDir(), "outbox"))
+                .setNetworkMonitor(getNetworkMonitor())));
+        if (prewarmPermissionsGroupName()) {
+            PermissionUtils.prewarmPermissionsGroupName(this);
+        }
+        StartupRunner.run(this, getStartupComponents(), this::onStartupComplete);
+    }
+
+    /**
+     * 是否在后台预先查询危险权限的组名称，需要频繁弹出权限说明时开启，默认关闭
+     */
+    protected boolean prewarmPermissionsGroupName() {
+        return false;
+    }
+
+    /**
+     * 启动组件，按声明的依赖关系执行，代替在onCreate中依次初始化各个SDK
+     * <p>
+     * 没有依赖关系的后台组件并行执行，onCreate只等待主线程组件及其依赖完成。
+     * </p>
+     */
+    protected List<StartupComponent> getStartupComponents() {
+        return new ArrayList<>();
+    }
+
+    /**
+     * 所有启动组件完成，在后台线程回调，默认不处理
+     * <p>
+     * 需要分析启动耗时时（例如debug包）可以调用{@link StartupReport#writeTo(File)}写入文件或上报。
+     * </p>
+     *
+     * @param report ~
+     */
+    protected void onStartupComplete(StartupReport report) {
+    }
+
+    /**
+     * 自定义共享OkHttpClient配置，第一次{@link HttpClientFactory#get()}时才会创建
+     *
+     * @param builder 已设置默认HTTP缓存和响应缓存目录
+     * @return ~
+     */
+    protected HttpClientFactory.Builder onCreateHttpClient(HttpClientFactory.Builder builder) {
+        return builder;
+    }
+
+    /**
+     * 启动时在后台并行预加载的preference文件，可通过{@link PrefUtil#getLoadTrace()}查看加载耗时
+     */
+    protected String[] getPreloadPreferences() {
+        return new String[0];
+    }
+
+    /**
+     * 是否开启PrefUtil延迟批量写入，默认关闭
+     * <p>
+     * 开启后setConfigParams不再同步commit，进程在flush前被杀会丢失还未写入的值。
+     * </p>
+     */
+    protected boolean usePrefWriteBehind() {
+        return false;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // 界面不可见后进程随时可能被杀，先把延迟写入的配置写入磁盘
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            PrefUtil.flushAll();
+        }
+        if (inflationPool != null && level >= TRIM_MEMORY_RUNNING_LOW) {
+            inflationPool.clear();
+        }
+    }
+
+    @Override
+    public void onTerminate() {
+        PrefUtil.flushAll();
+        super.onTerminate();
     }
 
     /**
      * 添加受到管理的Activity
      * <p>
-     * 当有一个以上Activity（BaseActivity已默认调用，其他Activity自行调用）就注册网络监听广播
+     * 当有一个以上Activity（BaseActivity已默认调用，其他Activity自行调用）就开始网络状态监听
      * </p>
      *
      * @param activity ~
      */
     public void addActivity(Activity activity) {
-        this.activityList.add(activity);
-        if (this.networkBroadcast == null && !this.activityList.isEmpty()) {
-            this.networkBroadcast = new BaseApp.NetworkBroadcast(this);
-            this.registerReceiver(this.networkBroadcast, new IntentFilter("android.net.conn.CONNECTIVITY_CHANGE"));
+        this.activityRegistry.add(activity);
+        if (!this.activityRegistry.isEmpty()) {
+            getNetworkMonitor().start();
         }
     }
 
     /**
      * 移除受到管理的Activity
      * <p>
-     * 当所有Activity（BaseActivity已默认调用，其他Activity自行调用）移除，就注销网络监听广播
+     * 当所有Activity（BaseActivity已默认调用，其他Activity自行调用）移除，就停止网络状态监听
      * </p>
      *
      * @param activity ~
      */
     public void removeActivity(Activity activity) {
-        this.activityList.remove(activity);
-        if (this.networkBroadcast != null && this.activityList.isEmpty()) {
-            this.unregisterReceiver(this.networkBroadcast);
-            this.networkBroadcast = null;
+        this.activityRegistry.remove(activity);
+        if (this.networkMonitor != null && this.activityRegistry.isEmpty()) {
+            this.networkMonitor.stop();
         }
     }
 
     /**
-     * Finish所有Activity退出应用
+     * 受管理的Activity，可在任意线程查询前台状态、栈顶Activity等
      */
-    public void exitApp() {
-        Iterator var1 = this.activityList.iterator();
+    public ActivityRegistry getActivityRegistry() {
+        return activityRegistry;
+    }
 
-        while (var1.hasNext()) {
-            Activity activity = (Activity) var1.next();
-            activity.finish();
+    /**
+     * 获取Activity作用域，没有则创建
+     * <p>
+     * BaseActivity已默认调用，ID保存在savedInstanceState中，配置变化后重建的Activity得到同一个作用域。
+     * </p>
+     *
+     * @param id ~
+     * @return ~
+     */
+    public ActivityScope obtainActivityScope(String id) {
+        ActivityScope scope = activityScopes.get(id);
+        if (scope == null) {
+            ActivityScope created = new ActivityScope(id);
+            scope = activityScopes.putIfAbsent(id, created);
+            if (scope == null) {
+                scope = created;
+            }
         }
+        return scope;
+    }
 
-        this.activityList.clear();
-        if (this.networkBroadcast != null) {
-            this.unregisterReceiver(this.networkBroadcast);
-            this.networkBroadcast = null;
+    /**
+     * 移除并清除Activity作用域，Activity真正销毁时调用
+     *
+     * @param id ~
+     */
+    public void releaseActivityScope(String id) {
+        ActivityScope scope = activityScopes.remove(id);
+        if (scope != null) {
+            scope.clear();
         }
     }
 
     /**
-     * 注册网络状态改变消息
+     * 预加载的布局，BaseActivity的{@link org.depp.devbase.ui.BaseActivity#usePrewarmedLayout()}返回true时优先从这里取
      */
-    public void registerNetworkMessage(Subscriber subscriber, RxBus.Callback<Boolean> callback) {
-        RxBus.getDefault().subscribe(subscriber, callback);
+    public synchronized InflationPool getInflationPool() {
+        if (inflationPool == null) {
+            inflationPool = new InflationPool(this);
+        }
+        return inflationPool;
     }
 
     /**
-     * 注销网路哦状态改变消息
+     * 在后台预加载下一个可能打开的页面的布局
+     *
+     * @param layoutId 页面的{@link org.depp.devbase.ui.BaseActivity#getAsyncLayoutId()}，页面需要开启usePrewarmedLayout
+     * @param count    数量，通常为1
      */
-    public void unregisterNetworkMessage(Subscriber subscriber) {
-        RxBus.getDefault().unregister(subscriber);
+    public void prewarmLayout(@LayoutRes int layoutId, int count) {
+        getInflationPool().prewarm(layoutId, count);
     }
 
-    class NetworkBroadcast extends BroadcastReceiver {
-
-        private boolean isHasNetwork;
+    /**
+     * Finish所有Activity退出应用，最后打开的最先finish
+     */
+    public void exitApp() {
+        this.activityRegistry.finishAll();
+        PrefUtil.flushAll();
+        if (this.networkMonitor != null) {
+            this.networkMonitor.stop();
+        }
+    }
 
-        public NetworkBroadcast(Context context) {
-            this.isHasNetwork = NetworkUtils.isConnected();
+    /**
+     * 网络状态监听，有受管理的Activity时才开始监听
+     * <p>
+     * {@link NetworkMonitor#getState()}可在任意线程高频调用。
+     * </p>
+     */
+    public synchronized NetworkMonitor getNetworkMonitor() {
+        if (this.networkMonitor == null) {
+            this.networkMonitor = new NetworkMonitor(this);
         }
+        return this.networkMonitor;
+    }
 
-        public void onReceive(Context context, Intent intent) {
-            if (intent != null && intent.getAction() != null
-                    && intent.getAction().equals("android.net.conn.CONNECTIVITY_CHANGE") && NetworkUtils.isConnected() != this.isHasNetwork) {
-                this.isHasNetwork = NetworkUtils.isConnected();
-                final boolean isNetworkConn = this.isHasNetwork;
-                try {
-                    RxBus.getDefault().post(isNetworkConn, Constant.EVENT_IS_NETWORK_CONNECT);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
+    /**
+     * 注册网络状态改变消息，连接状态改变时在主线程回调
+     * <p>
+     * 订阅者是Activity（实现了LifecycleProvider）时绑定生命周期：PAUSE/STOP期间只保留最后一个状态，RESUME时回调一次，DESTROY时自动注销。
+     * </p>
+     *
+     * @param subscriber 订阅者，用于注销
+     * @param callback   ~
+     * @return 也可以直接dispose取消订阅
+     */
+    @SuppressWarnings("unchecked")
+    public Disposable registerNetworkMessage(Object subscriber, EventBus.Callback<NetworkState> callback) {
+        if (subscriber instanceof Activity && subscriber instanceof LifecycleProvider) {
+            return EventBus.getDefault().subscribe((LifecycleProvider<ActivityEvent>) subscriber, NetworkState.class, false, callback);
         }
+        return EventBus.getDefault().subscribe(subscriber, NetworkState.class, AndroidSchedulers.mainThread(), false, callback);
+    }
+
+    /**
+     * 注销网络状态改变消息
+     */
+    public void unregisterNetworkMessage(Object subscriber) {
+        EventBus.getDefault().unregister(subscriber);
     }
 }
\ No newline at end of file
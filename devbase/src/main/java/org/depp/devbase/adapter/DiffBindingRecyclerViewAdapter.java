@@ -0,0 +1,148 @@
+package org.depp.devbase.adapter;
+
+import android.databinding.DataBindingUtil;
+import android.databinding.ViewDataBinding;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.AdapterListUpdateCallback;
+import android.support.v7.widget.RecyclerView;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.Scheduler;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.schedulers.Schedulers;
+import me.tatarka.bindingcollectionadapter2.BindingRecyclerViewAdapter;
+
+/**
+ * 在后台计算差异的BindingRecyclerViewAdapter
+ * <p>
+ * 1.每次{@link #submitList(List)}（或通过{@code app:items}调用{@link #setItems(List)}）保存列表快照，在后台用DiffUtil计算差异，
+ * 回到主线程后一次性替换并分发更新，不会notifyDataSetChanged。
+ * 2.计算期间又提交了新列表时，旧的结果直接丢弃。
+ * 3.{@link ItemDiffCallback#getChangePayload}返回的局部更新在{@link #onBindPayloads}中处理，{@link ItemDiffCallback#hasStableIds()}时使用稳定ID。
+ * 列表是快照，修改提交后的列表不会更新界面，需要重新提交。需要在主线程调用。
+ * </p>
+ */
+public class DiffBindingRecyclerViewAdapter<T> extends BindingRecyclerViewAdapter<T> {
+
+    private final SnapshotDiffer<T> differ;
+    /**
+     * 交给父类的列表，总是读取当前快照
+     */
+    private final List<T> items = new AbstractList<T>() {
+        @Override
+        public T get(int index) {
+            return differ.getCurrentList().get(index);
+        }
+
+        @Override
+        public int size() {
+            return differ.getCurrentList().size();
+        }
+    };
+
+    public DiffBindingRecyclerViewAdapter(@NonNull ItemDiffCallback<T> diffCallback) {
+        this.differ = new SnapshotDiffer<>(diffCallback, new AdapterListUpdateCallback(this), AndroidSchedulers.mainThread());
+        super.setItems(items);
+        if (diffCallback.hasStableIds()) {
+            setItemIds((position, item) -> diffCallback.getItemId(item));
+        }
+    }
+
+    /**
+     * 计算差异的线程，默认{@link Schedulers#computation()}
+     */
+    public DiffBindingRecyclerViewAdapter<T> setDiffScheduler(@NonNull Scheduler diffScheduler) {
+        differ.setDiffScheduler(diffScheduler);
+        return this;
+    }
+
+    /**
+     * 是否检测移动，默认true，不需要移动动画时关闭可以加快计算
+     */
+    public DiffBindingRecyclerViewAdapter<T> setDetectMoves(boolean detectMoves) {
+        differ.setDetectMoves(detectMoves);
+        return this;
+    }
+
+    /**
+     * 通过{@code app:items}设置的列表也在后台计算差异
+     */
+    @Override
+    public void setItems(@Nullable List<T> items) {
+        if (items == this.items) {
+            return;
+        }
+        submitList(items, null);
+    }
+
+    public void submitList(@Nullable List<T> newList) {
+        submitList(newList, null);
+    }
+
+    /**
+     * 提交新列表
+     *
+     * @param newList        会复制一份快照
+     * @param commitCallback 更新已经分发后在主线程回调，被更新的列表取代时不会回调
+     */
+    public void submitList(@Nullable List<T> newList, @Nullable final Runnable commitCallback) {
+        differ.submitList(newList, commitCallback);
+    }
+
+    /**
+     * 当前显示的列表
+     */
+    @NonNull
+    public List<T> getCurrentList() {
+        return differ.getCurrentList();
+    }
+
+    /**
+     * 处理{@link ItemDiffCallback#getChangePayload}返回的局部更新
+     *
+     * @param binding  ~
+     * @param position ~
+     * @param item     新的数据
+     * @param payloads 合并后的所有局部更新
+     * @return 已经处理时返回true，否则完整重新绑定
+     */
+    protected boolean onBindPayloads(@NonNull ViewDataBinding binding, int position, T item, @NonNull List<Object> payloads) {
+        return false;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        List<Object> changes = unwrapPayloads(payloads);
+        if (changes != null) {
+            ViewDataBinding binding = DataBindingUtil.getBinding(holder.itemView);
+            if (binding != null && onBindPayloads(binding, position, getAdapterItem(position), changes)) {
+                binding.executePendingBindings();
+                return;
+            }
+        }
+        // 父类把不认识的payload当作完整绑定
+        super.onBindViewHolder(holder, position, payloads);
+    }
+
+    /**
+     * @return 全部是{@link SnapshotDiffer.ChangePayload}时返回其内容，否则为null
+     */
+    @Nullable
+    private static List<Object> unwrapPayloads(List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            return null;
+        }
+        List<Object> changes = new ArrayList<>(payloads.size());
+        for (Object payload : payloads) {
+            if (!(payload instanceof SnapshotDiffer.ChangePayload)) {
+                return null;
+            }
+            changes.add(((SnapshotDiffer.ChangePayload) payload).payload);
+        }
+        return changes;
+    }
+}
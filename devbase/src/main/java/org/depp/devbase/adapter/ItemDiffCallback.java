@@ -0,0 +1,47 @@
+package org.depp.devbase.adapter;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * 列表项比较，在后台线程调用
+ */
+public abstract class ItemDiffCallback<T> {
+
+    /**
+     * 是否同一项，通常比较ID
+     */
+    public abstract boolean areItemsTheSame(@NonNull T oldItem, @NonNull T newItem);
+
+    /**
+     * 同一项的内容是否没有变化，true时不会重新绑定
+     */
+    public abstract boolean areContentsTheSame(@NonNull T oldItem, @NonNull T newItem);
+
+    /**
+     * 内容变化时的局部更新信息，在{@link DiffBindingRecyclerViewAdapter#onBindPayloads}中处理
+     *
+     * @return null时完整重新绑定
+     */
+    @Nullable
+    public Object getChangePayload(@NonNull T oldItem, @NonNull T newItem) {
+        return null;
+    }
+
+    /**
+     * 稳定ID，与{@link #areItemsTheSame}一致，在主线程调用
+     *
+     * @return {@link RecyclerView#NO_ID}表示不使用稳定ID
+     */
+    public long getItemId(@NonNull T item) {
+        return RecyclerView.NO_ID;
+    }
+
+    /**
+     * 是否使用稳定ID，重写{@link #getItemId}时返回true
+     */
+    public boolean hasStableIds() {
+        return false;
+    }
+}
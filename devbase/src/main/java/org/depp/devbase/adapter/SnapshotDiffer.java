@@ -0,0 +1,166 @@
+package org.depp.devbase.adapter;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * 保存列表快照并在后台计算差异，结果在mainScheduler上分发给{@link ListUpdateCallback}
+ * <p>
+ * 计算期间又提交了新列表时，旧的结果直接丢弃。需要在mainScheduler的线程调用。
+ * </p>
+ */
+final class SnapshotDiffer<T> {
+
+    private final ItemDiffCallback<T> diffCallback;
+    private final ListUpdateCallback updateCallback;
+    private final Scheduler mainScheduler;
+    private Scheduler diffScheduler = Schedulers.computation();
+    private boolean detectMoves = true;
+    /**
+     * 当前显示的快照，只在主线程替换，替换后不再修改
+     */
+    private List<T> current = Collections.emptyList();
+    private int generation;
+    private Disposable diffDisposable;
+
+    SnapshotDiffer(@NonNull ItemDiffCallback<T> diffCallback, @NonNull ListUpdateCallback updateCallback,
+                   @NonNull Scheduler mainScheduler) {
+        this.diffCallback = diffCallback;
+        this.updateCallback = updateCallback;
+        this.mainScheduler = mainScheduler;
+    }
+
+    void setDiffScheduler(@NonNull Scheduler diffScheduler) {
+        this.diffScheduler = diffScheduler;
+    }
+
+    void setDetectMoves(boolean detectMoves) {
+        this.detectMoves = detectMoves;
+    }
+
+    @NonNull
+    List<T> getCurrentList() {
+        return current;
+    }
+
+    /**
+     * @param newList        会复制一份快照
+     * @param commitCallback 更新已经分发后回调，被更新的列表取代时不会回调
+     */
+    void submitList(@Nullable List<T> newList, @Nullable final Runnable commitCallback) {
+        final int runGeneration = ++generation;
+        if (diffDisposable != null) {
+            diffDisposable.dispose();
+            diffDisposable = null;
+        }
+        final List<T> oldItems = current;
+        final List<T> newItems = newList == null || newList.isEmpty()
+                ? Collections.<T>emptyList() : Collections.unmodifiableList(new ArrayList<>(newList));
+        if (oldItems.isEmpty() || newItems.isEmpty()) {
+            // 不需要计算差异
+            current = newItems;
+            if (!oldItems.isEmpty()) {
+                updateCallback.onRemoved(0, oldItems.size());
+            }
+            if (!newItems.isEmpty()) {
+                updateCallback.onInserted(0, newItems.size());
+            }
+            if (commitCallback != null) {
+                commitCallback.run();
+            }
+            return;
+        }
+        diffDisposable = Single.fromCallable(() -> DiffUtil.calculateDiff(new SnapshotCallback<>(oldItems, newItems, diffCallback), detectMoves))
+                .subscribeOn(diffScheduler)
+                .observeOn(mainScheduler)
+                .subscribe(result -> {
+                    if (runGeneration != generation) {
+                        return;
+                    }
+                    diffDisposable = null;
+                    current = newItems;
+                    result.dispatchUpdatesTo(updateCallback);
+                    if (commitCallback != null) {
+                        commitCallback.run();
+                    }
+                }, Throwable::printStackTrace);
+    }
+
+    /**
+     * 与DataBinding自身的payload区分
+     */
+    static final class ChangePayload {
+
+        final Object payload;
+
+        ChangePayload(Object payload) {
+            this.payload = payload;
+        }
+    }
+
+    private static final class SnapshotCallback<T> extends DiffUtil.Callback {
+
+        private final List<T> oldItems;
+        private final List<T> newItems;
+        private final ItemDiffCallback<T> diffCallback;
+
+        SnapshotCallback(List<T> oldItems, List<T> newItems, ItemDiffCallback<T> diffCallback) {
+            this.oldItems = oldItems;
+            this.newItems = newItems;
+            this.diffCallback = diffCallback;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldItems.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newItems.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            T oldItem = oldItems.get(oldItemPosition);
+            T newItem = newItems.get(newItemPosition);
+            if (oldItem == null || newItem == null) {
+                return oldItem == newItem;
+            }
+            return diffCallback.areItemsTheSame(oldItem, newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            T oldItem = oldItems.get(oldItemPosition);
+            T newItem = newItems.get(newItemPosition);
+            if (oldItem == null || newItem == null) {
+                return oldItem == newItem;
+            }
+            return diffCallback.areContentsTheSame(oldItem, newItem);
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            T oldItem = oldItems.get(oldItemPosition);
+            T newItem = newItems.get(newItemPosition);
+            if (oldItem == null || newItem == null) {
+                return null;
+            }
+            Object payload = diffCallback.getChangePayload(oldItem, newItem);
+            return payload == null ? null : new ChangePayload(payload);
+        }
+    }
+}
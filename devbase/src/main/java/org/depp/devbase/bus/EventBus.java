@@ -0,0 +1,340 @@
+package org.depp.devbase.bus;
+
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.trello.rxlifecycle2.LifecycleProvider;
+import com.trello.rxlifecycle2.android.ActivityEvent;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Scheduler;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * 按事件类型分发的消息总线
+ * <p>
+ * 1.以事件的Class作为Key（只匹配确切类型），不需要字符串tag，基本类型请包装成不可变事件对象。
+ * 2.订阅者数组写时复制，post只是遍历数组，直接回调或已在主线程的主线程订阅者不会产生任何对象。
+ * 3.postSticky保存最后一个事件，sticky订阅时立即收到。
+ * 4.可绑定BaseActivity生命周期，DESTROY时自动注销；PAUSE/STOP期间每个订阅只保留最后一个事件，RESUME时回调一次。
+ * </p>
+ */
+public class EventBus {
+
+    private static final Subscription<?>[] EMPTY = new Subscription<?>[0];
+
+    private static volatile EventBus defaultInstance;
+
+    private final ConcurrentHashMap<Class<?>, Subscription<?>[]> subscriptions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, Object> stickyEvents = new ConcurrentHashMap<>();
+
+    public static EventBus getDefault() {
+        if (defaultInstance == null) {
+            synchronized (EventBus.class) {
+                if (defaultInstance == null) {
+                    defaultInstance = new EventBus();
+                }
+            }
+        }
+        return defaultInstance;
+    }
+
+    public interface Callback<T> {
+
+        void onEvent(T event);
+    }
+
+    /**
+     * 订阅，在post的线程回调
+     *
+     * @param owner    订阅者，用于{@link #unregister(Object)}，可为null
+     * @param type     事件类型
+     * @param callback ~
+     * @return 用于取消订阅
+     */
+    public <T> Disposable subscribe(@Nullable Object owner, @NonNull Class<T> type, @NonNull Callback<T> callback) {
+        return subscribe(owner, type, null, false, callback);
+    }
+
+    /**
+     * 订阅
+     *
+     * @param owner     订阅者，用于{@link #unregister(Object)}，可为null
+     * @param type      事件类型
+     * @param scheduler 回调线程，null表示在post的线程回调
+     * @param sticky    是否立即收到最后一个sticky事件
+     * @param callback  ~
+     * @return 用于取消订阅
+     */
+    public <T> Disposable subscribe(@Nullable Object owner, @NonNull Class<T> type, @Nullable Scheduler scheduler,
+                                    boolean sticky, @NonNull Callback<T> callback) {
+        Subscription<T> subscription = new Subscription<>(this, owner, type, scheduler, callback);
+        add(subscription, sticky);
+        return subscription;
+    }
+
+    private <T> void add(Subscription<T> subscription, boolean sticky) {
+        Class<T> type = subscription.type;
+        if (subscription.disposed) {
+            return;
+        }
+        synchronized (subscriptions) {
+            Subscription<?>[] current = subscriptions.get(type);
+            if (current == null) {
+                current = EMPTY;
+            }
+            Subscription<?>[] updated = new Subscription<?>[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = subscription;
+            subscriptions.put(type, updated);
+        }
+        if (sticky) {
+            Object event = stickyEvents.get(type);
+            if (event != null) {
+                subscription.deliver(type.cast(event));
+            }
+        }
+    }
+
+    /**
+     * 订阅并绑定生命周期，DESTROY时自动注销，在主线程回调；PAUSE/STOP期间的事件合并为最后一个，RESUME时回调
+     *
+     * @param provider BaseActivity
+     * @param type     事件类型
+     * @param sticky   是否立即收到最后一个sticky事件
+     * @param callback ~
+     * @return 用于提前取消订阅
+     */
+    public <T> Disposable subscribe(@NonNull LifecycleProvider<ActivityEvent> provider, @NonNull Class<T> type,
+                                    boolean sticky, @NonNull Callback<T> callback) {
+        return subscribe(provider, type, sticky, true, callback);
+    }
+
+    /**
+     * 订阅并绑定生命周期，DESTROY时自动注销，在主线程回调
+     *
+     * @param provider         BaseActivity
+     * @param type             事件类型
+     * @param sticky           是否立即收到最后一个sticky事件
+     * @param pauseWhenStopped true时PAUSE/STOP期间只保留最后一个事件，RESUME时回调；false时总是立即回调
+     * @param callback         ~
+     * @return 用于提前取消订阅
+     */
+    public <T> Disposable subscribe(@NonNull LifecycleProvider<ActivityEvent> provider, @NonNull Class<T> type,
+                                    boolean sticky, boolean pauseWhenStopped, @NonNull Callback<T> callback) {
+        final Subscription<T> subscription = new Subscription<>(this, provider, type, AndroidSchedulers.mainThread(), callback);
+        if (pauseWhenStopped) {
+            subscription.conflated = new AtomicReference<>();
+        }
+        // 先绑定生命周期，订阅时Activity已经PAUSE/STOP的话sticky事件也会等到RESUME
+        subscription.lifecycle = provider.lifecycle()
+                .takeUntil(event -> event == ActivityEvent.DESTROY)
+                .subscribe(event -> {
+                    switch (event) {
+                        case PAUSE:
+                        case STOP:
+                            subscription.paused = pauseWhenStopped;
+                            break;
+                        case RESUME:
+                            subscription.resume();
+                            break;
+                        case DESTROY:
+                            subscription.dispose();
+                            break;
+                        default:
+                            break;
+                    }
+                });
+        add(subscription, sticky);
+        return subscription;
+    }
+
+    /**
+     * 发送事件，按事件的确切类型分发
+     *
+     * @param event ~
+     */
+    public void post(@NonNull Object event) {
+        Subscription<?>[] targets = subscriptions.get(event.getClass());
+        if (targets == null) {
+            return;
+        }
+        for (Subscription<?> subscription : targets) {
+            subscription.deliverUnchecked(event);
+        }
+    }
+
+    /**
+     * 保存为sticky事件并发送
+     *
+     * @param event ~
+     */
+    public void postSticky(@NonNull Object event) {
+        stickyEvents.put(event.getClass(), event);
+        post(event);
+    }
+
+    @Nullable
+    public <T> T getSticky(@NonNull Class<T> type) {
+        return type.cast(stickyEvents.get(type));
+    }
+
+    public void removeSticky(@NonNull Class<?> type) {
+        stickyEvents.remove(type);
+    }
+
+    /**
+     * 注销订阅者的所有订阅
+     *
+     * @param owner ~
+     */
+    public void unregister(@NonNull Object owner) {
+        synchronized (subscriptions) {
+            for (Subscription<?>[] current : subscriptions.values()) {
+                for (Subscription<?> subscription : current) {
+                    if (subscription.owner == owner) {
+                        subscription.dispose();
+                    }
+                }
+            }
+        }
+    }
+
+    private void remove(Subscription<?> subscription) {
+        synchronized (subscriptions) {
+            Subscription<?>[] current = subscriptions.get(subscription.type);
+            if (current == null) {
+                return;
+            }
+            int index = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == subscription) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return;
+            }
+            if (current.length == 1) {
+                subscriptions.remove(subscription.type);
+                return;
+            }
+            Subscription<?>[] updated = new Subscription<?>[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            subscriptions.put(subscription.type, updated);
+        }
+    }
+
+    private static final class Subscription<T> implements Disposable {
+
+        final EventBus bus;
+        final Object owner;
+        final Class<T> type;
+        final Callback<T> callback;
+        final boolean mainThread;
+        final Scheduler.Worker worker;
+        volatile boolean disposed;
+        /**
+         * 暂停期间的最后一个事件，null表示不合并
+         */
+        AtomicReference<T> conflated;
+        volatile boolean paused;
+        Disposable lifecycle;
+
+        Subscription(EventBus bus, Object owner, Class<T> type, Scheduler scheduler, Callback<T> callback) {
+            this.bus = bus;
+            this.owner = owner;
+            this.type = type;
+            this.callback = callback;
+            this.mainThread = scheduler == AndroidSchedulers.mainThread();
+            this.worker = scheduler == null ? null : scheduler.createWorker();
+        }
+
+        @SuppressWarnings("unchecked")
+        void deliverUnchecked(Object event) {
+            deliver((T) event);
+        }
+
+        void deliver(final T event) {
+            if (disposed) {
+                return;
+            }
+            if (paused) {
+                conflated.set(event);
+                // 与resume竞争时，由取到事件的一方回调
+                if (!paused) {
+                    flushConflated();
+                }
+                return;
+            }
+            dispatch(event);
+        }
+
+        /**
+         * 在主线程调用
+         */
+        void resume() {
+            paused = false;
+            if (conflated != null) {
+                flushConflated();
+            }
+        }
+
+        private void flushConflated() {
+            T event = conflated.getAndSet(null);
+            if (event != null) {
+                dispatch(event);
+            }
+        }
+
+        private void dispatch(final T event) {
+            if (worker == null || (mainThread && Looper.myLooper() == Looper.getMainLooper())) {
+                callback.onEvent(event);
+            } else {
+                worker.schedule(() -> {
+                    if (disposed) {
+                        return;
+                    }
+                    if (paused) {
+                        // 已在队列中时Activity暂停了，这个事件比暂停期间post的事件旧，不能覆盖它们
+                        conflated.compareAndSet(null, event);
+                        if (!paused) {
+                            flushConflated();
+                        }
+                    } else {
+                        callback.onEvent(event);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void dispose() {
+            if (disposed) {
+                return;
+            }
+            disposed = true;
+            if (worker != null) {
+                worker.dispose();
+            }
+            if (lifecycle != null) {
+                lifecycle.dispose();
+            }
+            if (conflated != null) {
+                conflated.set(null);
+            }
+            bus.remove(this);
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+    }
+}
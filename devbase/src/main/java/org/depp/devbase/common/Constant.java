@@ -2,5 +2,10 @@ package org.depp.devbase.common;
 
 public class Constant {
 
+    /**
+     * @deprecated 网络状态改为通过{@link org.depp.devbase.bus.EventBus}发送{@link org.depp.devbase.network.NetworkState}，
+     * 使用{@link org.depp.devbase.BaseApp#registerNetworkMessage}订阅
+     */
+    @Deprecated
     public static final String EVENT_IS_NETWORK_CONNECT = "event_is_network_connect";
 }
\ No newline at end of file
@@ -0,0 +1,111 @@
+package org.depp.devbase.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁直方图
+ * <p>
+ * 0~31直接对应一个桶，更大的值每个2的幂区间分为16个桶，误差不超过1/16。
+ * 记录只有几次原子加，可在任意线程调用。
+ * </p>
+ */
+public final class Histogram {
+
+    private static final int LINEAR_BUCKETS = 32;
+    private static final int SUB_BUCKETS = 16;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + (MAX_EXPONENT - 5 + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param value 小于0按0记录
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // 重试
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * 百分位数，返回所在桶的上界
+     *
+     * @param percentile 0~100
+     * @return 没有记录时为0
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int sub = (int) ((value >>> (exponent - 4)) & (SUB_BUCKETS - 1));
+        return LINEAR_BUCKETS + (exponent - 5) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 5;
+        int sub = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - 4);
+        return (SUB_BUCKETS + sub) * width + width - 1;
+    }
+}
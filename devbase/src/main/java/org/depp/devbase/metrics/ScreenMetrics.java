@@ -0,0 +1,143 @@
+package org.depp.devbase.metrics;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 界面打开耗时和掉帧统计
+ * <p>
+ * 1.按Activity类名汇总：CREATE到第一次RESUME、第一次布局、initView耗时、首帧、可交互时间，以及RESUME期间的帧耗时。
+ * 2.数据保存在内存中的{@link Histogram}，{@link #exportJson()}导出p50/p95/p99。
+ * 3.默认关闭，关闭时BaseActivity只读取一次{@link #isEnabled()}，不会订阅生命周期也不会监听帧回调。
+ * </p>
+ */
+public final class ScreenMetrics {
+
+    public static final String CREATE_TO_RESUME = "createToResume";
+    public static final String FIRST_LAYOUT = "firstLayout";
+    public static final String INIT_VIEW = "initView";
+    public static final String FIRST_FRAME = "firstFrame";
+    public static final String INTERACTIVE = "interactive";
+    public static final String FRAME_TIME = "frameTime";
+
+    private static volatile boolean enabled;
+    private static final ConcurrentHashMap<String, Screen> screens = new ConcurrentHashMap<>();
+
+    private ScreenMetrics() {
+    }
+
+    /**
+     * 开启统计，只对之后创建的Activity生效
+     */
+    public static void setEnabled(boolean enabled) {
+        ScreenMetrics.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取界面的统计，没有则创建
+     *
+     * @param name 通常是Activity类名
+     * @return ~
+     */
+    public static Screen getScreen(@NonNull String name) {
+        Screen screen = screens.get(name);
+        if (screen == null) {
+            Screen created = new Screen();
+            screen = screens.putIfAbsent(name, created);
+            if (screen == null) {
+                screen = created;
+            }
+        }
+        return screen;
+    }
+
+    /**
+     * 清空所有统计，例如导出之后
+     */
+    public static void reset() {
+        screens.clear();
+    }
+
+    /**
+     * 导出JSON：{"界面": {"createToResume": {"count", "p50", "p95", "p99", "max", "mean"}, ..., "frames", "droppedFrames"}}
+     * 时间单位为毫秒
+     */
+    public static String exportJson() {
+        JSONObject root = new JSONObject();
+        try {
+            for (Map.Entry<String, Screen> entry : screens.entrySet()) {
+                root.put(entry.getKey(), entry.getValue().toJson());
+            }
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        return root.toString();
+    }
+
+    /**
+     * 一个界面的统计
+     */
+    public static final class Screen {
+
+        private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+        final AtomicLong frames = new AtomicLong();
+        final AtomicLong droppedFrames = new AtomicLong();
+
+        public Histogram getHistogram(@NonNull String metric) {
+            Histogram histogram = histograms.get(metric);
+            if (histogram == null) {
+                Histogram created = new Histogram();
+                histogram = histograms.putIfAbsent(metric, created);
+                if (histogram == null) {
+                    histogram = created;
+                }
+            }
+            return histogram;
+        }
+
+        public void record(@NonNull String metric, long value) {
+            getHistogram(metric).record(value);
+        }
+
+        /**
+         * RESUME期间的总帧数
+         */
+        public long getFrames() {
+            return frames.get();
+        }
+
+        /**
+         * 按刷新周期计算的掉帧数
+         */
+        public long getDroppedFrames() {
+            return droppedFrames.get();
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                Histogram histogram = entry.getValue();
+                json.put(entry.getKey(), new JSONObject()
+                        .put("count", histogram.getCount())
+                        .put("p50", histogram.getPercentile(50))
+                        .put("p95", histogram.getPercentile(95))
+                        .put("p99", histogram.getPercentile(99))
+                        .put("max", histogram.getMax())
+                        .put("mean", histogram.getMean()));
+            }
+            json.put("frames", frames.get());
+            json.put("droppedFrames", droppedFrames.get());
+            return json;
+        }
+    }
+}
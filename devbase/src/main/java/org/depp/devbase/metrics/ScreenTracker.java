@@ -0,0 +1,115 @@
+package org.depp.devbase.metrics;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+import com.trello.rxlifecycle2.android.ActivityEvent;
+
+import org.depp.devbase.ui.BaseActivity;
+import org.depp.devbase.ui.InitPipeline;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * 一个Activity实例的统计，由BaseActivity在{@link ScreenMetrics#isEnabled()}时创建
+ * <p>
+ * 通过生命周期记录CREATE到第一次RESUME，RESUME期间用Choreographer记录每帧耗时和掉帧数，PAUSE时停止。
+ * </p>
+ */
+public final class ScreenTracker implements Choreographer.FrameCallback {
+
+    private final ScreenMetrics.Screen screen;
+    private final long createTime = SystemClock.uptimeMillis();
+    private final long frameIntervalNanos;
+    private final Disposable disposable;
+
+    private boolean resumed;
+    private boolean firstResumeRecorded;
+    private long lastFrameTimeNanos;
+
+    /**
+     * 开始统计，需要在onCreate中调用
+     *
+     * @param activity  ~
+     * @param lifecycle Activity的生命周期
+     * @return ~
+     */
+    public static ScreenTracker track(@NonNull Activity activity, @NonNull Observable<ActivityEvent> lifecycle) {
+        return new ScreenTracker(activity, lifecycle);
+    }
+
+    private ScreenTracker(Activity activity, Observable<ActivityEvent> lifecycle) {
+        this.screen = ScreenMetrics.getScreen(activity.getClass().getName());
+        float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+        this.frameIntervalNanos = (long) (1000000000L / (refreshRate > 0 ? refreshRate : 60));
+        this.disposable = lifecycle.subscribe(this::onLifecycleEvent);
+    }
+
+    private void onLifecycleEvent(ActivityEvent event) {
+        switch (event) {
+            case RESUME:
+                if (!firstResumeRecorded) {
+                    firstResumeRecorded = true;
+                    screen.record(ScreenMetrics.CREATE_TO_RESUME, SystemClock.uptimeMillis() - createTime);
+                }
+                if (!resumed) {
+                    resumed = true;
+                    lastFrameTimeNanos = 0;
+                    Choreographer.getInstance().postFrameCallback(this);
+                }
+                break;
+            case PAUSE:
+                stopFrames();
+                break;
+            case DESTROY:
+                stopFrames();
+                disposable.dispose();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void stopFrames() {
+        if (resumed) {
+            resumed = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!resumed) {
+            return;
+        }
+        if (lastFrameTimeNanos > 0) {
+            long interval = frameTimeNanos - lastFrameTimeNanos;
+            screen.record(ScreenMetrics.FRAME_TIME, interval / 1000000);
+            screen.frames.incrementAndGet();
+            long dropped = Math.round((double) interval / frameIntervalNanos) - 1;
+            if (dropped > 0) {
+                screen.droppedFrames.addAndGet(dropped);
+            }
+        }
+        lastFrameTimeNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * 记录初始化各阶段的时间
+     *
+     * @param pipeline BaseActivity的初始化流程
+     */
+    public void onInitComplete(@NonNull InitPipeline pipeline) {
+        screen.record(ScreenMetrics.FIRST_LAYOUT, pipeline.getFirstLayoutTime());
+        Long initView = pipeline.getTaskTimes().get(BaseActivity.TASK_INIT_VIEW);
+        if (initView != null) {
+            screen.record(ScreenMetrics.INIT_VIEW, initView);
+        }
+        screen.record(ScreenMetrics.FIRST_FRAME, pipeline.getFirstFrameTime());
+        screen.record(ScreenMetrics.INTERACTIVE, pipeline.getInteractiveTime());
+    }
+}
@@ -0,0 +1,31 @@
+package org.depp.devbase.network;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 接口响应缓存策略，只对返回Observable的GET接口有效
+ * <p>
+ * 缓存时间不超过ttl：只返回缓存，不请求。
+ * 超过ttl但不超过maxStale：先返回缓存，再在后台请求（没有网络时等待网络恢复），数据有变化时再返回一次。
+ * 超过maxStale或没有缓存：直接请求。
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CachePolicy {
+
+    /**
+     * 缓存有效时间（秒），0表示每次都会重新请求
+     */
+    long ttlSeconds() default 0;
+
+    /**
+     * 缓存最长可用时间（秒）
+     */
+    long maxStaleSeconds() default 7 * 24 * 60 * 60;
+}
@@ -0,0 +1,178 @@
+package org.depp.devbase.network;
+
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.ByteString;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+
+/**
+ * 合并相同的进行中请求
+ * <p>
+ * 包装RxJava2CallAdapterFactory，返回Observable/Single的接口在订阅时以 method + url + 请求头hash + body hash 作为Key，
+ * 已有相同请求在进行中就共享同一个上游（replay(1).refCount()），后订阅的也能收到结果，不会再发起请求。
+ * 请求结束后移除，之后的订阅重新请求。默认只合并GET/HEAD。
+ * </p>
+ */
+public final class CoalescingCallAdapterFactory extends CallAdapter.Factory {
+
+    private final RxJava2CallAdapterFactory delegate;
+    private final boolean coalesceUnsafeMethods;
+    private final ConcurrentHashMap<String, Observable<?>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong deduplicatedCount = new AtomicLong();
+
+    /**
+     * 只合并GET/HEAD
+     */
+    public static CoalescingCallAdapterFactory create() {
+        return new CoalescingCallAdapterFactory(RxJava2CallAdapterFactory.create(), false);
+    }
+
+    /**
+     * @param delegate              实际的RxJava2CallAdapterFactory
+     * @param coalesceUnsafeMethods 是否也合并POST/PUT等请求（Key包含body hash）
+     * @return ~
+     */
+    public static CoalescingCallAdapterFactory create(RxJava2CallAdapterFactory delegate, boolean coalesceUnsafeMethods) {
+        return new CoalescingCallAdapterFactory(delegate, coalesceUnsafeMethods);
+    }
+
+    private CoalescingCallAdapterFactory(RxJava2CallAdapterFactory delegate, boolean coalesceUnsafeMethods) {
+        this.delegate = delegate;
+        this.coalesceUnsafeMethods = coalesceUnsafeMethods;
+    }
+
+    /**
+     * 经过合并判断的订阅次数
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * 被合并（没有发起新请求）的订阅次数
+     */
+    public long getDeduplicatedCount() {
+        return deduplicatedCount.get();
+    }
+
+    /**
+     * 当前进行中的合并请求数量
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    @Override
+    public CallAdapter<?, ?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        CallAdapter<?, ?> adapter = delegate.get(returnType, annotations, retrofit);
+        if (adapter == null) {
+            return null;
+        }
+        Class<?> rawType = getRawType(returnType);
+        if (rawType != Observable.class && rawType != Single.class) {
+            return adapter;
+        }
+        return new CoalescingCallAdapter<>((CallAdapter<Object, Object>) adapter, rawType == Single.class);
+    }
+
+    /**
+     * 获取共享的上游，没有则创建
+     */
+    private Observable<?> share(final String key, Observable<?> upstream) {
+        requestCount.incrementAndGet();
+        Observable<?> shared = inFlight.get(key);
+        if (shared != null) {
+            deduplicatedCount.incrementAndGet();
+            return shared;
+        }
+        final AtomicReference<Observable<?>> self = new AtomicReference<>();
+        Observable<?> created = upstream
+                .doFinally(() -> inFlight.remove(key, self.get()))
+                .replay(1)
+                .refCount();
+        self.set(created);
+        shared = inFlight.putIfAbsent(key, created);
+        if (shared != null) {
+            deduplicatedCount.incrementAndGet();
+            return shared;
+        }
+        return created;
+    }
+
+    /**
+     * @return null 不合并
+     */
+    @Nullable
+    private String keyOf(Request request) {
+        String method = request.method();
+        boolean safe = "GET".equals(method) || "HEAD".equals(method);
+        if (!safe && !coalesceUnsafeMethods) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(method).append(' ').append(request.url());
+        // Authorization、Accept-Language等请求头不同的请求不能共享响应
+        if (request.headers().size() > 0) {
+            key.append(' ').append(ByteString.encodeUtf8(request.headers().toString()).md5().hex());
+        }
+        RequestBody body = request.body();
+        if (body != null) {
+            try {
+                Buffer buffer = new Buffer();
+                body.writeTo(buffer);
+                key.append(' ').append(buffer.readByteString().md5().hex());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return key.toString();
+    }
+
+    private final class CoalescingCallAdapter<R> implements CallAdapter<R, Object> {
+
+        private final CallAdapter<R, Object> adapter;
+        private final boolean single;
+
+        CoalescingCallAdapter(CallAdapter<R, Object> adapter, boolean single) {
+            this.adapter = adapter;
+            this.single = single;
+        }
+
+        @Override
+        public Type responseType() {
+            return adapter.responseType();
+        }
+
+        @Override
+        public Object adapt(final Call<R> call) {
+            final String key = keyOf(call.request());
+            if (key == null) {
+                return adapter.adapt(call);
+            }
+            final Object adapted = adapter.adapt(call);
+            if (single) {
+                final Observable<?> upstream = ((Single<?>) adapted).toObservable();
+                return Single.defer(() -> share(key, upstream).singleOrError());
+            }
+            final Observable<?> upstream = (Observable<?>) adapted;
+            return Observable.defer(() -> share(key, upstream));
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package org.depp.devbase.network;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.logging.HttpLoggingInterceptor;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * 共享的OkHttpClient/Retrofit
+ * <p>
+ * 整个应用只有一个OkHttpClient，所有Retrofit共用同一个Dispatcher、连接池和磁盘缓存。
+ * BaseApp启动时调用{@link #init(Builder)}，第一次{@link #get()}时才真正创建。
+ * </p>
+ */
+public class HttpClientFactory {
+
+    public static final int DEFAULT_MAX_REQUESTS = 64;
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 8;
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 8;
+    public static final long DEFAULT_KEEP_ALIVE_MINUTES = 5;
+    public static final long DEFAULT_CACHE_SIZE = 20 * 1024 * 1024;
+    public static final long DEFAULT_TIMEOUT_SECONDS = 15;
+
+    private static volatile Builder pendingBuilder;
+    private static volatile HttpClientFactory instance;
+
+    private final OkHttpClient client;
+    private final Gson gson;
+    private final CoalescingCallAdapterFactory coalescingFactory = CoalescingCallAdapterFactory.create();
+    private final OfflineCacheCallAdapterFactory offlineCacheFactory;
+    private final StreamingCallAdapterFactory streamingFactory;
+    private final Outbox outbox;
+    private final ConcurrentHashMap<String, Retrofit> retrofits = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> services = new ConcurrentHashMap<>();
+
+    /**
+     * 设置配置，第一次{@link #get()}时创建
+     *
+     * @param builder ~
+     */
+    public static void init(@NonNull Builder builder) {
+        synchronized (HttpClientFactory.class) {
+            pendingBuilder = builder;
+            instance = null;
+        }
+    }
+
+    /**
+     * 获取共享实例
+     *
+     * @return ~
+     */
+    public static HttpClientFactory get() {
+        HttpClientFactory factory = instance;
+        if (factory == null) {
+            synchronized (HttpClientFactory.class) {
+                factory = instance;
+                if (factory == null) {
+                    if (pendingBuilder == null) {
+                        throw new NullPointerException("请初始化 HttpClientFactory");
+                    }
+                    factory = pendingBuilder.build();
+                    instance = factory;
+                }
+            }
+        }
+        return factory;
+    }
+
+    private HttpClientFactory(Builder builder) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(builder.maxRequests);
+        dispatcher.setMaxRequestsPerHost(builder.maxRequestsPerHost);
+
+        OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(builder.maxIdleConnections, builder.keepAliveMinutes, TimeUnit.MINUTES))
+                .connectTimeout(builder.timeoutSeconds, TimeUnit.SECONDS)
+                .readTimeout(builder.timeoutSeconds, TimeUnit.SECONDS)
+                .writeTimeout(builder.timeoutSeconds, TimeUnit.SECONDS);
+        if (builder.cacheDir != null && builder.cacheSize > 0) {
+            clientBuilder.cache(new Cache(builder.cacheDir, builder.cacheSize));
+        }
+        this.outbox = builder.outboxDir == null ? null : new Outbox(builder.outboxDir, builder.networkMonitor);
+        if (outbox != null) {
+            clientBuilder.addInterceptor(outbox.interceptor());
+        }
+        for (Interceptor interceptor : builder.interceptors) {
+            clientBuilder.addInterceptor(interceptor);
+        }
+        for (Interceptor interceptor : builder.networkInterceptors) {
+            clientBuilder.addNetworkInterceptor(interceptor);
+        }
+        if (builder.logLevel != HttpLoggingInterceptor.Level.NONE) {
+            clientBuilder.addInterceptor(new HttpLoggingInterceptor().setLevel(builder.logLevel));
+        }
+        this.client = clientBuilder.build();
+        if (outbox != null) {
+            outbox.start(client);
+        }
+        this.gson = builder.gson != null ? builder.gson : new Gson();
+        // 流式响应边读网络边解析，不能在主线程订阅
+        this.streamingFactory = StreamingCallAdapterFactory.create(gson, Schedulers.io());
+        this.offlineCacheFactory = builder.responseCacheDir == null ? null
+                : OfflineCacheCallAdapterFactory.create(new ResponseCache(builder.responseCacheDir), gson, builder.networkMonitor);
+    }
+
+    /**
+     * 共享的OkHttpClient
+     */
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    public Gson getGson() {
+        return gson;
+    }
+
+    /**
+     * 所有Retrofit共用的请求合并，可查看合并次数
+     */
+    public CoalescingCallAdapterFactory getCoalescingFactory() {
+        return coalescingFactory;
+    }
+
+    /**
+     * {@link CachePolicy}使用的响应缓存，没有设置缓存目录时为null
+     */
+    @Nullable
+    public ResponseCache getResponseCache() {
+        return offlineCacheFactory == null ? null : offlineCacheFactory.getCache();
+    }
+
+    /**
+     * 离线请求队列，没有设置队列目录时为null
+     */
+    @Nullable
+    public Outbox getOutbox() {
+        return outbox;
+    }
+
+    /**
+     * 需要单独设置超时、拦截器时使用，新的client与共享client使用同一个Dispatcher、连接池和缓存
+     */
+    public OkHttpClient.Builder newClientBuilder() {
+        return client.newBuilder();
+    }
+
+    /**
+     * 获取baseUrl对应的Retrofit，同一个baseUrl只创建一次
+     *
+     * @param baseUrl ~
+     * @return ~
+     */
+    public Retrofit getRetrofit(@NonNull String baseUrl) {
+        Retrofit retrofit = retrofits.get(baseUrl);
+        if (retrofit == null) {
+            Retrofit created = newRetrofitBuilder(baseUrl).build();
+            retrofit = retrofits.putIfAbsent(baseUrl, created);
+            if (retrofit == null) {
+                retrofit = created;
+            }
+        }
+        return retrofit;
+    }
+
+    /**
+     * 创建使用共享client的Retrofit.Builder，已添加Gson和RxJava2（相同的进行中请求会被合并，支持{@link CachePolicy}和{@link StreamJson}）
+     *
+     * @param baseUrl ~
+     * @return ~
+     */
+    public Retrofit.Builder newRetrofitBuilder(@NonNull String baseUrl) {
+        Retrofit.Builder builder = new Retrofit.Builder()
+                .baseUrl(baseUrl)
+                .client(client)
+                .addCallAdapterFactory(streamingFactory);
+        if (offlineCacheFactory != null) {
+            builder.addCallAdapterFactory(offlineCacheFactory);
+        }
+        return builder
+                .addCallAdapterFactory(coalescingFactory)
+                .addConverterFactory(GsonConverterFactory.create(gson));
+    }
+
+    /**
+     * 获取Retrofit Service，同一个baseUrl同一个接口只创建一次
+     *
+     * @param baseUrl ~
+     * @param service ~
+     * @return ~
+     */
+    public <T> T create(@NonNull String baseUrl, @NonNull Class<T> service) {
+        String key = baseUrl + '|' + service.getName();
+        Object created = services.get(key);
+        if (created == null) {
+            Object newService = getRetrofit(baseUrl).create(service);
+            created = services.putIfAbsent(key, newService);
+            if (created == null) {
+                created = newService;
+            }
+        }
+        return service.cast(created);
+    }
+
+    public static class Builder {
+
+        private File cacheDir;
+        private long cacheSize = DEFAULT_CACHE_SIZE;
+        private int maxRequests = DEFAULT_MAX_REQUESTS;
+        private int maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+        private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+        private long keepAliveMinutes = DEFAULT_KEEP_ALIVE_MINUTES;
+        private long timeoutSeconds = DEFAULT_TIMEOUT_SECONDS;
+        private HttpLoggingInterceptor.Level logLevel = HttpLoggingInterceptor.Level.NONE;
+        private Gson gson;
+        private File responseCacheDir;
+        private NetworkMonitor networkMonitor;
+        private File outboxDir;
+        private final List<Interceptor> interceptors = new ArrayList<>();
+        private final List<Interceptor> networkInterceptors = new ArrayList<>();
+
+        /**
+         * HTTP磁盘缓存目录，null不使用缓存
+         */
+        public Builder setCacheDir(@Nullable File cacheDir) {
+            this.cacheDir = cacheDir;
+            return this;
+        }
+
+        public Builder setCacheSize(long cacheSize) {
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        public Builder setMaxRequests(int maxRequests) {
+            this.maxRequests = maxRequests;
+            return this;
+        }
+
+        public Builder setMaxRequestsPerHost(int maxRequestsPerHost) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        public Builder setMaxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
+        public Builder setKeepAliveMinutes(long keepAliveMinutes) {
+            this.keepAliveMinutes = keepAliveMinutes;
+            return this;
+        }
+
+        public Builder setTimeoutSeconds(long timeoutSeconds) {
+            this.timeoutSeconds = timeoutSeconds;
+            return this;
+        }
+
+        public Builder setLogLevel(HttpLoggingInterceptor.Level logLevel) {
+            this.logLevel = logLevel;
+            return this;
+        }
+
+        /**
+         * {@link CachePolicy}响应缓存目录，null不使用
+         */
+        public Builder setResponseCacheDir(@Nullable File responseCacheDir) {
+            this.responseCacheDir = responseCacheDir;
+            return this;
+        }
+
+        /**
+         * {@link Outbox}队列目录，null不使用。上次未发送的请求在共享实例创建后开始重放
+         */
+        public Builder setOutboxDir(@Nullable File outboxDir) {
+            this.outboxDir = outboxDir;
+            return this;
+        }
+
+        /**
+         * {@link CachePolicy}没有网络时等待网络恢复再重新验证，{@link Outbox}网络恢复时重放
+         */
+        public Builder setNetworkMonitor(@Nullable NetworkMonitor networkMonitor) {
+            this.networkMonitor = networkMonitor;
+            return this;
+        }
+
+        public Builder setGson(Gson gson) {
+            this.gson = gson;
+            return this;
+        }
+
+        public Builder addInterceptor(Interceptor interceptor) {
+            interceptors.add(interceptor);
+            return this;
+        }
+
+        public Builder addNetworkInterceptor(Interceptor interceptor) {
+            networkInterceptors.add(interceptor);
+            return this;
+        }
+
+        public HttpClientFactory build() {
+            return new HttpClientFactory(this);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package org.depp.devbase.network;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+
+import org.depp.devbase.bus.EventBus;
+
+/**
+ * 网络状态监听
+ * <p>
+ * 1.Android 5.0以上使用NetworkCallback，以下使用CONNECTIVITY_ACTION广播，回调都在后台线程处理。
+ * 2.最新状态缓存在volatile字段中，{@link #getState()}不会有IPC调用。
+ * 3.短时间内多次变化会合并，只有连接状态真正改变才在主线程通过{@link EventBus}发送sticky的{@link NetworkState}。
+ * </p>
+ */
+public class NetworkMonitor {
+
+    public static final long DEFAULT_DEBOUNCE_MS = 500;
+
+    private final Context context;
+    private final ConnectivityManager connectivityManager;
+    private final long debounceMs;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable dispatchRunnable = this::dispatch;
+    private final Runnable refreshRunnable = () -> update(query());
+
+    private volatile NetworkState state = NetworkState.DISCONNECTED;
+    private volatile boolean started;
+
+    private HandlerThread thread;
+    private volatile Handler handler;
+    private DefaultNetworkCallback networkCallback;
+    private BroadcastReceiver connectivityReceiver;
+    /**
+     * 最后一次发送的状态，只在handler线程访问
+     */
+    private NetworkState dispatchedState;
+
+    public NetworkMonitor(Context context) {
+        this(context, DEFAULT_DEBOUNCE_MS);
+    }
+
+    /**
+     * @param context    ~
+     * @param debounceMs 状态变化后等待多久才发送消息，期间的变化会合并
+     */
+    public NetworkMonitor(Context context, long debounceMs) {
+        this.context = context.getApplicationContext();
+        this.connectivityManager = (ConnectivityManager) this.context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.debounceMs = debounceMs;
+    }
+
+    /**
+     * 开始监听
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        thread = new HandlerThread("NetworkMonitor");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        // 先在后台线程取得初始状态，初始状态不发送消息
+        handler.post(() -> {
+            state = query();
+            dispatchedState = state;
+        });
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            registerNetworkCallback();
+        } else {
+            connectivityReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    update(query());
+                }
+            };
+            context.registerReceiver(connectivityReceiver,
+                    new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION), null, handler);
+        }
+    }
+
+    /**
+     * 停止监听
+     */
+    public synchronized void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        if (networkCallback != null) {
+            unregisterNetworkCallback();
+        }
+        if (connectivityReceiver != null) {
+            context.unregisterReceiver(connectivityReceiver);
+            connectivityReceiver = null;
+        }
+        handler.removeCallbacksAndMessages(null);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            thread.quitSafely();
+        } else {
+            thread.quit();
+        }
+        thread = null;
+        handler = null;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * 最新的网络状态，任意线程调用，不会有IPC
+     */
+    public NetworkState getState() {
+        return state;
+    }
+
+    /**
+     * 是否连接，任意线程调用，不会有IPC
+     */
+    public boolean isConnected() {
+        return state.isConnected();
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void registerNetworkCallback() {
+        networkCallback = new DefaultNetworkCallback();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            connectivityManager.registerDefaultNetworkCallback(networkCallback, handler);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            connectivityManager.registerDefaultNetworkCallback(networkCallback);
+        } else {
+            NetworkRequest request = new NetworkRequest.Builder()
+                    .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    .build();
+            connectivityManager.registerNetworkCallback(request, networkCallback);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void unregisterNetworkCallback() {
+        try {
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+        }
+        networkCallback = null;
+    }
+
+    /**
+     * 在handler线程调用，更新缓存状态并延迟发送
+     */
+    private void update(NetworkState newState) {
+        Handler target = handler;
+        if (target == null) {
+            return;
+        }
+        state = newState;
+        target.removeCallbacks(dispatchRunnable);
+        target.postDelayed(dispatchRunnable, debounceMs);
+    }
+
+    private void dispatch() {
+        final NetworkState current = state;
+        boolean changed = dispatchedState == null || dispatchedState.isConnected() != current.isConnected();
+        dispatchedState = current;
+        if (changed) {
+            // 订阅者大多直接更新UI，在主线程发送，主线程订阅者直接回调
+            mainHandler.post(() -> EventBus.getDefault().postSticky(current));
+        }
+    }
+
+    /**
+     * 主动查询当前网络，会有IPC，只在handler线程调用
+     */
+    private NetworkState query() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            Network network = connectivityManager.getActiveNetwork();
+            return network == null ? NetworkState.DISCONNECTED
+                    : fromCapabilities(connectivityManager.getNetworkCapabilities(network));
+        }
+        NetworkInfo info = connectivityManager.getActiveNetworkInfo();
+        if (info == null || !info.isConnected()) {
+            return NetworkState.DISCONNECTED;
+        }
+        int transport;
+        switch (info.getType()) {
+            case ConnectivityManager.TYPE_WIFI:
+                transport = NetworkState.TRANSPORT_WIFI;
+                break;
+            case ConnectivityManager.TYPE_MOBILE:
+                transport = NetworkState.TRANSPORT_CELLULAR;
+                break;
+            case ConnectivityManager.TYPE_ETHERNET:
+                transport = NetworkState.TRANSPORT_ETHERNET;
+                break;
+            default:
+                transport = NetworkState.TRANSPORT_OTHER;
+                break;
+        }
+        return new NetworkState(true, transport, connectivityManager.isActiveNetworkMetered(), true);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static NetworkState fromCapabilities(@Nullable NetworkCapabilities capabilities) {
+        if (capabilities == null || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
+            return NetworkState.DISCONNECTED;
+        }
+        int transport;
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+            transport = NetworkState.TRANSPORT_WIFI;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+            transport = NetworkState.TRANSPORT_CELLULAR;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) {
+            transport = NetworkState.TRANSPORT_ETHERNET;
+        } else {
+            transport = NetworkState.TRANSPORT_OTHER;
+        }
+        boolean metered = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+        boolean validated = Build.VERSION.SDK_INT < Build.VERSION_CODES.M
+                || capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+        return new NetworkState(true, transport, metered, validated);
+    }
+
+    /**
+     * Android 7.0以上跟踪默认网络，直接使用回调中的NetworkCapabilities；以下收到回调后重新查询
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private final class DefaultNetworkCallback extends ConnectivityManager.NetworkCallback {
+
+        private final boolean trackDefault = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N;
+
+        @Override
+        public void onAvailable(final Network network) {
+            if (!trackDefault) {
+                post(refreshRunnable);
+            } else if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+                // 8.0以下onAvailable之后不保证回调onCapabilitiesChanged
+                post(() -> update(fromCapabilities(connectivityManager.getNetworkCapabilities(network))));
+            }
+        }
+
+        @Override
+        public void onCapabilitiesChanged(Network network, final NetworkCapabilities capabilities) {
+            if (trackDefault) {
+                post(() -> update(fromCapabilities(capabilities)));
+            } else {
+                post(refreshRunnable);
+            }
+        }
+
+        @Override
+        public void onLost(Network network) {
+            if (trackDefault) {
+                post(() -> update(NetworkState.DISCONNECTED));
+            } else {
+                post(refreshRunnable);
+            }
+        }
+
+        private void post(Runnable runnable) {
+            Handler target = handler;
+            if (target != null) {
+                target.post(runnable);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.depp.devbase.network;
+
+/**
+ * 网络状态，不可变
+ */
+public final class NetworkState {
+
+    public static final int TRANSPORT_NONE = 0;
+    public static final int TRANSPORT_WIFI = 1;
+    public static final int TRANSPORT_CELLULAR = 2;
+    public static final int TRANSPORT_ETHERNET = 3;
+    public static final int TRANSPORT_OTHER = 4;
+
+    public static final NetworkState DISCONNECTED = new NetworkState(false, TRANSPORT_NONE, false, false);
+
+    private final boolean connected;
+    private final int transport;
+    private final boolean metered;
+    private final boolean validated;
+
+    public NetworkState(boolean connected, int transport, boolean metered, boolean validated) {
+        this.connected = connected;
+        this.transport = transport;
+        this.metered = metered;
+        this.validated = validated;
+    }
+
+    /**
+     * 是否连接
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * 网络类型 {@link #TRANSPORT_WIFI}, {@link #TRANSPORT_CELLULAR}...
+     */
+    public int getTransport() {
+        return transport;
+    }
+
+    public boolean isWifi() {
+        return transport == TRANSPORT_WIFI;
+    }
+
+    public boolean isCellular() {
+        return transport == TRANSPORT_CELLULAR;
+    }
+
+    /**
+     * 是否按流量计费
+     */
+    public boolean isMetered() {
+        return metered;
+    }
+
+    /**
+     * 系统是否已验证可以访问互联网（Android 6.0以下与connected相同）
+     */
+    public boolean isValidated() {
+        return validated;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof NetworkState)) {
+            return false;
+        }
+        NetworkState that = (NetworkState) o;
+        return connected == that.connected
+                && transport == that.transport
+                && metered == that.metered
+                && validated == that.validated;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = connected ? 1 : 0;
+        result = 31 * result + transport;
+        result = 31 * result + (metered ? 1 : 0);
+        result = 31 * result + (validated ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkState{connected=" + connected
+                + ", transport=" + transport
+                + ", metered=" + metered
+                + ", validated=" + validated + "}";
+    }
+}
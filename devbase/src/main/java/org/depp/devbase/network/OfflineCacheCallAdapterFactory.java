@@ -0,0 +1,185 @@
+package org.depp.devbase.network;
+
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.google.gson.Gson;
+
+import org.depp.devbase.bus.EventBus;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.Request;
+import okio.ByteString;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.Result;
+
+/**
+ * 离线优先的响应缓存
+ * <p>
+ * 对带{@link CachePolicy}注解、返回Observable&lt;Body&gt;的GET接口生效：
+ * 有缓存立即返回，过期后在后台重新验证，没有网络时等到{@link NetworkMonitor}报告网络恢复再请求，
+ * 页面不需要等待网络就能先显示缓存数据。重新验证失败时只记录日志，因为已经返回了缓存。
+ * </p>
+ */
+public final class OfflineCacheCallAdapterFactory extends CallAdapter.Factory {
+
+    private static final String TAG = "OfflineCache";
+
+    private final ResponseCache cache;
+    private final Gson gson;
+    @Nullable
+    private final NetworkMonitor networkMonitor;
+
+    /**
+     * @param cache          ~
+     * @param gson           用于序列化响应体，需与GsonConverterFactory一致
+     * @param networkMonitor null表示始终认为有网络
+     */
+    public static OfflineCacheCallAdapterFactory create(ResponseCache cache, Gson gson, @Nullable NetworkMonitor networkMonitor) {
+        return new OfflineCacheCallAdapterFactory(cache, gson, networkMonitor);
+    }
+
+    private OfflineCacheCallAdapterFactory(ResponseCache cache, Gson gson, @Nullable NetworkMonitor networkMonitor) {
+        this.cache = cache;
+        this.gson = gson;
+        this.networkMonitor = networkMonitor;
+    }
+
+    public ResponseCache getCache() {
+        return cache;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    @Override
+    public CallAdapter<?, ?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        CachePolicy policy = findPolicy(annotations);
+        if (policy == null || getRawType(returnType) != Observable.class || !(returnType instanceof ParameterizedType)) {
+            return null;
+        }
+        Class<?> bodyClass = getRawType(getParameterUpperBound(0, (ParameterizedType) returnType));
+        if (bodyClass == Response.class || bodyClass == Result.class) {
+            return null;
+        }
+        CallAdapter<Object, Object> next = (CallAdapter<Object, Object>) retrofit.nextCallAdapter(this, returnType, annotations);
+        return new OfflineCacheCallAdapter(next, policy);
+    }
+
+    @Nullable
+    private static CachePolicy findPolicy(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof CachePolicy) {
+                return (CachePolicy) annotation;
+            }
+        }
+        return null;
+    }
+
+    private boolean isConnected() {
+        return networkMonitor == null || !networkMonitor.isStarted() || networkMonitor.isConnected();
+    }
+
+    /**
+     * 有网络时立即完成，否则等到网络恢复
+     */
+    private Completable awaitConnected() {
+        return Completable.defer(() -> {
+            if (isConnected()) {
+                return Completable.complete();
+            }
+            return Observable.<NetworkState>create(emitter -> emitter.setDisposable(
+                    EventBus.getDefault().subscribe(emitter, NetworkState.class, null, true, state -> {
+                        if (state.isConnected()) {
+                            emitter.onNext(state);
+                        }
+                    })))
+                    .take(1)
+                    .ignoreElements();
+        });
+    }
+
+    /**
+     * 缓存Key包含请求头，不同用户（Authorization）、不同语言（Accept-Language）的响应不会混用。
+     * 拦截器添加的请求头在这里不可见，通过拦截器添加用户凭证时，切换用户需要清除缓存。
+     */
+    private static String keyOf(Request request) {
+        String url = request.url().toString();
+        if (request.headers().size() == 0) {
+            return url;
+        }
+        return url + ' ' + ByteString.encodeUtf8(request.headers().toString()).md5().hex();
+    }
+
+    private final class OfflineCacheCallAdapter implements CallAdapter<Object, Object> {
+
+        private final CallAdapter<Object, Object> next;
+        private final long ttlMillis;
+        private final long maxStaleMillis;
+
+        OfflineCacheCallAdapter(CallAdapter<Object, Object> next, CachePolicy policy) {
+            this.next = next;
+            this.ttlMillis = TimeUnit.SECONDS.toMillis(policy.ttlSeconds());
+            this.maxStaleMillis = TimeUnit.SECONDS.toMillis(policy.maxStaleSeconds());
+        }
+
+        @Override
+        public Type responseType() {
+            return next.responseType();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Object adapt(Call<Object> call) {
+            Request request = call.request();
+            if (!"GET".equals(request.method())) {
+                return next.adapt(call);
+            }
+            final String key = keyOf(request);
+            final Observable<Object> network = (Observable<Object>) next.adapt(call);
+            return Observable.defer(() -> {
+                ResponseCache.Entry entry = cache.get(key);
+                if (entry == null || entry.getAgeMillis() > maxStaleMillis) {
+                    return fetch(network, key, null);
+                }
+                Object cachedValue = gson.fromJson(entry.json, responseType());
+                if (cachedValue == null) {
+                    return fetch(network, key, null);
+                }
+                Observable<Object> cached = Observable.just(cachedValue);
+                if (entry.getAgeMillis() <= ttlMillis) {
+                    return cached;
+                }
+                // 网络恢复的消息在主线程，请求需要切回后台线程
+                Observable<Object> revalidate = awaitConnected()
+                        .andThen(fetch(network, key, entry).subscribeOn(Schedulers.io()))
+                        .onErrorResumeNext((Throwable error) -> {
+                            // 已经返回了缓存，失败只记录，下次订阅时会重新验证
+                            Log.w(TAG, "Revalidate failed: " + request.url(), error);
+                            return Observable.empty();
+                        });
+                return cached.concatWith(revalidate);
+            }).subscribeOn(Schedulers.io());
+        }
+
+        /**
+         * 请求并写入缓存，与previous相同的数据不会再发送
+         */
+        private Observable<Object> fetch(Observable<Object> network, final String key, @Nullable final ResponseCache.Entry previous) {
+            return network.filter(value -> {
+                String json = gson.toJson(value, responseType());
+                cache.put(key, json);
+                return previous == null || !json.equals(previous.json);
+            });
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package org.depp.devbase.network;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.depp.devbase.bus.EventBus;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.subjects.BehaviorSubject;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ * 离线请求队列
+ * <p>
+ * 1.带{@link #HEADER_OUTBOX}请求头的接口（Retrofit中使用{@code @Headers("Devbase-Outbox: 1")}），
+ * 没有网络或请求失败时写入磁盘队列，并返回204和{@link #HEADER_OUTBOX_ID}，调用方按已提交处理。
+ * 204没有响应体，Retrofit不会调用Converter，这类接口应返回Completable、Response&lt;Void&gt;或Observable&lt;Response&lt;T&gt;&gt;。
+ * 2.每个请求一个文件，先写临时文件再重命名，进程被杀也不会留下不完整的请求。
+ * 3.{@link NetworkMonitor}报告网络恢复时按加入顺序逐个重放，遇到需要重试的失败即停止，保证同一接口的写入顺序，
+ * 失败按指数退避重试。每个请求带{@link #HEADER_IDEMPOTENCY_KEY}，服务端可据此去重。
+ * 4.{@link #observeState()}可查看队列长度和重放进度。
+ * </p>
+ */
+public class Outbox {
+
+    public static final String HEADER_OUTBOX = "Devbase-Outbox";
+    public static final String HEADER_OUTBOX_ID = "Devbase-Outbox-Id";
+    public static final String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    public static final long DEFAULT_INITIAL_BACKOFF_MS = 2000;
+    public static final long DEFAULT_MAX_BACKOFF_MS = 5 * 60 * 1000;
+
+    private static final int FILE_VERSION = 1;
+    private static final String SUFFIX = ".req";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    @Nullable
+    private final NetworkMonitor networkMonitor;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final BehaviorSubject<State> stateSubject = BehaviorSubject.create();
+    private final Interceptor interceptor = this::intercept;
+
+    /**
+     * 调度和重放都在这个线程，请求按顺序执行
+     */
+    private final ScheduledExecutorService scheduler;
+
+    private volatile OkHttpClient client;
+    /**
+     * 连续失败次数，只在scheduler线程修改
+     */
+    private volatile int attempt;
+    /**
+     * 以下只在scheduler线程访问
+     */
+    private ScheduledFuture<?> pendingDrain;
+    private long completedCount;
+    private long droppedCount;
+
+    public Outbox(@NonNull File directory, @Nullable NetworkMonitor networkMonitor) {
+        this(directory, networkMonitor, DEFAULT_INITIAL_BACKOFF_MS, DEFAULT_MAX_BACKOFF_MS);
+    }
+
+    /**
+     * @param directory        队列目录，需要持久保存，不要放在cache目录
+     * @param networkMonitor   null表示始终认为有网络
+     * @param initialBackoffMs 第一次重试的等待时间，之后每次翻倍
+     * @param maxBackoffMs     最长等待时间
+     */
+    public Outbox(@NonNull File directory, @Nullable NetworkMonitor networkMonitor, long initialBackoffMs, long maxBackoffMs) {
+        this.directory = directory;
+        this.networkMonitor = networkMonitor;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 设置重放使用的client并开始监听网络，client中应包含{@link #interceptor()}
+     *
+     * @param client ~
+     */
+    public void start(@NonNull OkHttpClient client) {
+        this.client = client;
+        EventBus.getDefault().subscribe(this, NetworkState.class, null, true, state -> {
+            if (state.isConnected()) {
+                scheduleDrain(0, true);
+            }
+        });
+        scheduler.execute(() -> {
+            publishState(false);
+            drain();
+        });
+    }
+
+    /**
+     * 需要添加到OkHttpClient的第一个拦截器，重放时其他拦截器（如鉴权）会重新执行
+     */
+    public Interceptor interceptor() {
+        return interceptor;
+    }
+
+    /**
+     * 队列状态，订阅时立即收到当前状态
+     */
+    public Observable<State> observeState() {
+        return stateSubject.hide();
+    }
+
+    /**
+     * 当前队列中的请求数
+     */
+    public int getDepth() {
+        return listQueued().length;
+    }
+
+    /**
+     * 立即尝试重放，会重置退避时间
+     */
+    public void drainNow() {
+        scheduleDrain(0, true);
+    }
+
+    /**
+     * 直接加入队列，不尝试请求
+     *
+     * @param request ~
+     * @return 队列中的ID，同时也是幂等Key
+     */
+    public String enqueue(@NonNull Request request) throws IOException {
+        String id = request.header(HEADER_IDEMPOTENCY_KEY);
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+        }
+        write(request.newBuilder()
+                .removeHeader(HEADER_OUTBOX)
+                .header(HEADER_IDEMPOTENCY_KEY, id)
+                .build(), id);
+        scheduler.execute(() -> publishState(isDraining()));
+        return id;
+    }
+
+    private Response intercept(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.header(HEADER_OUTBOX) == null) {
+            return chain.proceed(request);
+        }
+        String id = request.header(HEADER_IDEMPOTENCY_KEY);
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+        }
+        request = request.newBuilder()
+                .removeHeader(HEADER_OUTBOX)
+                .header(HEADER_IDEMPOTENCY_KEY, id)
+                .build();
+        if (isConnected()) {
+            try {
+                Response response = chain.proceed(request);
+                if (!isRetryable(response.code())) {
+                    return response;
+                }
+                response.close();
+            } catch (IOException e) {
+                if (chain.call().isCanceled()) {
+                    // 调用方已经取消（例如dispose），不再重放
+                    throw e;
+                }
+                // 网络错误，加入队列
+            }
+        }
+        enqueue(request);
+        scheduleDrain(nextBackoff(), false);
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(204)
+                .message("Queued")
+                .header(HEADER_OUTBOX_ID, id)
+                .body(ResponseBody.create(null, new byte[0]))
+                .build();
+    }
+
+    private boolean isConnected() {
+        return networkMonitor == null || !networkMonitor.isStarted() || networkMonitor.isConnected();
+    }
+
+    private static boolean isRetryable(int code) {
+        return code == 408 || code == 429 || code >= 500;
+    }
+
+    private long nextBackoff() {
+        return Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt, 16));
+    }
+
+    /**
+     * @param reset 重置退避次数，网络恢复时使用
+     */
+    private void scheduleDrain(long delayMs, boolean reset) {
+        scheduler.execute(() -> {
+            if (reset) {
+                attempt = 0;
+            }
+            if (pendingDrain != null) {
+                if (!reset && pendingDrain.getDelay(TimeUnit.MILLISECONDS) <= delayMs) {
+                    return;
+                }
+                pendingDrain.cancel(false);
+            }
+            pendingDrain = scheduler.schedule(() -> {
+                pendingDrain = null;
+                drain();
+            }, delayMs, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * 按顺序逐个重放，只在scheduler线程执行
+     */
+    private void drain() {
+        if (client == null || !isConnected()) {
+            publishState(false);
+            return;
+        }
+        File[] files = listQueued();
+        if (files.length > 0) {
+            publishState(true);
+        }
+        for (File file : files) {
+            if (!replay(file) || !isConnected()) {
+                // 保持顺序，这个请求和后面的请求等下次重试
+                long delay = nextBackoff();
+                attempt++;
+                publishState(false);
+                if (isConnected()) {
+                    scheduleDrain(delay, false);
+                }
+                return;
+            }
+        }
+        attempt = 0;
+        publishState(false);
+    }
+
+    /**
+     * @return false 需要重试
+     */
+    private boolean replay(File file) {
+        Request request;
+        try {
+            request = read(file);
+        } catch (IOException e) {
+            // 无法解析的文件不会成功，直接丢弃
+            e.printStackTrace();
+            delete(file, false);
+            return true;
+        }
+        try (Response response = client.newCall(request).execute()) {
+            if (isRetryable(response.code())) {
+                return false;
+            }
+            // 成功或不可重试的错误（4xx）都移出队列
+            delete(file, response.isSuccessful());
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void delete(File file, boolean completed) {
+        if (file.delete()) {
+            scheduler.execute(() -> {
+                if (completed) {
+                    completedCount++;
+                } else {
+                    droppedCount++;
+                }
+                publishState(isDraining());
+            });
+        }
+    }
+
+    private boolean isDraining() {
+        State state = stateSubject.getValue();
+        return state != null && state.draining;
+    }
+
+    private void publishState(boolean draining) {
+        stateSubject.onNext(new State(getDepth(), draining, completedCount, droppedCount));
+    }
+
+    private File[] listQueued() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    private void write(Request request, String id) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("无法创建目录 " + directory);
+        }
+        String name = String.format("%013d-%06d-%s", System.currentTimeMillis(), sequence.incrementAndGet() % 1000000, id);
+        File tmp = new File(directory, name + TMP_SUFFIX);
+        try (BufferedSink sink = Okio.buffer(Okio.sink(tmp))) {
+            sink.writeInt(FILE_VERSION);
+            writeString(sink, request.method());
+            writeString(sink, request.url().toString());
+            Headers headers = request.headers();
+            sink.writeInt(headers.size());
+            for (int i = 0; i < headers.size(); i++) {
+                writeString(sink, headers.name(i));
+                writeString(sink, headers.value(i));
+            }
+            RequestBody body = request.body();
+            if (body == null) {
+                sink.writeInt(-1);
+            } else {
+                MediaType contentType = body.contentType();
+                writeString(sink, contentType == null ? "" : contentType.toString());
+                Buffer buffer = new Buffer();
+                body.writeTo(buffer);
+                sink.writeInt((int) buffer.size());
+                sink.writeAll(buffer);
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(new File(directory, name + SUFFIX))) {
+            tmp.delete();
+            throw new IOException("无法写入 " + name);
+        }
+    }
+
+    private static Request read(File file) throws IOException {
+        try (BufferedSource source = Okio.buffer(Okio.source(file))) {
+            if (source.readInt() != FILE_VERSION) {
+                throw new IOException("不支持的版本 " + file);
+            }
+            String method = readString(source);
+            Request.Builder builder = new Request.Builder().url(readString(source));
+            int headerCount = source.readInt();
+            for (int i = 0; i < headerCount; i++) {
+                builder.addHeader(readString(source), readString(source));
+            }
+            RequestBody body = null;
+            int contentTypeLength = source.readInt();
+            if (contentTypeLength >= 0) {
+                String contentType = source.readUtf8(contentTypeLength);
+                ByteString content = source.readByteString(source.readInt());
+                body = RequestBody.create(contentType.isEmpty() ? null : MediaType.parse(contentType), content);
+            }
+            return builder.method(method, body).build();
+        }
+    }
+
+    private static void writeString(BufferedSink sink, String value) throws IOException {
+        ByteString bytes = ByteString.encodeUtf8(value);
+        sink.writeInt(bytes.size());
+        sink.write(bytes);
+    }
+
+    private static String readString(BufferedSource source) throws IOException {
+        return source.readUtf8(source.readInt());
+    }
+
+    /**
+     * 队列状态
+     */
+    public static final class State {
+
+        /**
+         * 队列中的请求数
+         */
+        public final int depth;
+        /**
+         * 是否正在重放
+         */
+        public final boolean draining;
+        /**
+         * 重放成功的请求数
+         */
+        public final long completed;
+        /**
+         * 因不可重试的错误被移除的请求数
+         */
+        public final long dropped;
+
+        State(int depth, boolean draining, long completed, long dropped) {
+            this.depth = depth;
+            this.draining = draining;
+            this.completed = completed;
+            this.dropped = dropped;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.depp.devbase.network;
+
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ * 接口响应缓存，内存LRU + 磁盘两级
+ * <p>
+ * 保存的是响应体序列化后的JSON，磁盘读写需要在后台线程调用。
+ * </p>
+ */
+public class ResponseCache {
+
+    public static final int DEFAULT_MEMORY_SIZE = 1024 * 1024;
+    public static final long DEFAULT_DISK_SIZE = 10 * 1024 * 1024;
+
+    private final File directory;
+    private final long maxDiskSize;
+    private final LruCache<String, Entry> memory;
+
+    /**
+     * @param directory   磁盘缓存目录
+     * @param memorySize  内存缓存字符数
+     * @param maxDiskSize 磁盘缓存字节数
+     */
+    public ResponseCache(File directory, int memorySize, long maxDiskSize) {
+        this.directory = directory;
+        this.maxDiskSize = maxDiskSize;
+        this.memory = new LruCache<String, Entry>(memorySize) {
+            @Override
+            protected int sizeOf(String key, Entry value) {
+                return value.json.length();
+            }
+        };
+    }
+
+    public ResponseCache(File directory) {
+        this(directory, DEFAULT_MEMORY_SIZE, DEFAULT_DISK_SIZE);
+    }
+
+    /**
+     * 读取缓存，内存没有时读取磁盘
+     *
+     * @param key ~
+     * @return null 没有缓存
+     */
+    @Nullable
+    public Entry get(String key) {
+        Entry entry = memory.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        File file = fileOf(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try (BufferedSource source = Okio.buffer(Okio.source(file))) {
+            long storedAt = source.readLong();
+            entry = new Entry(source.readUtf8(), storedAt);
+            memory.put(key, entry);
+            return entry;
+        } catch (IOException e) {
+            // 文件不完整
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param key  ~
+     * @param json 响应体JSON
+     */
+    public void put(String key, String json) {
+        Entry entry = new Entry(json, System.currentTimeMillis());
+        memory.put(key, entry);
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+        File file = fileOf(key);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (BufferedSink sink = Okio.buffer(Okio.sink(tmp))) {
+            sink.writeLong(entry.storedAt);
+            sink.writeUtf8(json);
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            return;
+        }
+        trimDisk();
+    }
+
+    public void remove(String key) {
+        memory.remove(key);
+        fileOf(key).delete();
+    }
+
+    public void clear() {
+        memory.evictAll();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private File fileOf(String key) {
+        return new File(directory, ByteString.encodeUtf8(key).md5().hex());
+    }
+
+    /**
+     * 超出磁盘大小时删除最旧的文件
+     */
+    private synchronized void trimDisk() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= maxDiskSize) {
+            return;
+        }
+        Arrays.sort(files, (left, right) -> Long.compare(left.lastModified(), right.lastModified()));
+        for (File file : files) {
+            if (total <= maxDiskSize) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    public static final class Entry {
+
+        public final String json;
+        public final long storedAt;
+
+        Entry(String json, long storedAt) {
+            this.json = json;
+            this.storedAt = storedAt;
+        }
+
+        public long getAgeMillis() {
+            return System.currentTimeMillis() - storedAt;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.depp.devbase.network;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * 大响应的流式处理
+ * <p>
+ * 1.{@link #jsonArray}用JsonReader逐个解析数组元素，按下游的请求数量读取（背压），取消时关闭响应。
+ * 2.{@link #toFile}把响应体直接写入文件，不经过内存中的对象或字符串。
+ * 响应体需要来自{@link retrofit2.http.Streaming}接口，否则Retrofit已经把整个响应读入内存。
+ * </p>
+ */
+public final class ResponseStreams {
+
+    private ResponseStreams() {
+    }
+
+    /**
+     * 逐个解析响应中的JSON数组
+     *
+     * @param bodySupplier 订阅时调用，每次订阅打开一个新的响应
+     * @param gson         ~
+     * @param elementType  数组元素类型
+     * @param path         数组路径，见{@link StreamJson#value()}
+     * @return 在订阅的线程读取网络
+     */
+    public static <T> Flowable<T> jsonArray(@NonNull final Callable<ResponseBody> bodySupplier, @NonNull final Gson gson,
+                                            @NonNull final Type elementType, @NonNull final String path) {
+        @SuppressWarnings("unchecked")
+        final TypeAdapter<T> adapter = (TypeAdapter<T>) gson.getAdapter(TypeToken.get(elementType));
+        return Flowable.generate(
+                () -> open(bodySupplier.call(), gson, path),
+                (state, emitter) -> {
+                    JsonReader reader = state.reader;
+                    while (reader.hasNext()) {
+                        T element = adapter.read(reader);
+                        // null元素跳过，RxJava不允许null；每次回调都要发出一个元素，否则会占用下游的请求数量
+                        if (element != null) {
+                            emitter.onNext(element);
+                            return;
+                        }
+                    }
+                    reader.endArray();
+                    emitter.onComplete();
+                },
+                ArrayState::close);
+    }
+
+    /**
+     * 把响应体写入文件，先写临时文件，完成后再重命名
+     *
+     * @param body ~
+     * @param file 目标文件，已存在时覆盖
+     * @return 订阅时开始写入，在订阅的线程读取网络
+     */
+    public static Single<File> toFile(@NonNull final ResponseBody body, @NonNull final File file) {
+        return Single.fromCallable(() -> {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Can not create directory: " + parent);
+            }
+            File tmp = new File(file.getPath() + ".tmp");
+            try (ResponseBody closeable = body;
+                 BufferedSink sink = Okio.buffer(Okio.sink(tmp))) {
+                sink.writeAll(closeable.source());
+            } catch (IOException e) {
+                tmp.delete();
+                throw e;
+            }
+            if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Can not rename to: " + file);
+            }
+            return file;
+        });
+    }
+
+    private static ArrayState open(ResponseBody body, Gson gson, String path) throws IOException {
+        JsonReader reader = gson.newJsonReader(body.charStream());
+        try {
+            if (!path.isEmpty()) {
+                for (String name : path.split("\\.")) {
+                    moveToField(reader, name, path);
+                }
+            }
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                throw new JsonParseException("Expected array at \"" + path + "\" but was " + reader.peek());
+            }
+            reader.beginArray();
+        } catch (IOException | RuntimeException e) {
+            body.close();
+            throw e;
+        }
+        return new ArrayState(body, reader);
+    }
+
+    /**
+     * 在当前对象中找到字段，之前的字段直接跳过不解析
+     */
+    private static void moveToField(JsonReader reader, String name, String path) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (name.equals(reader.nextName())) {
+                return;
+            }
+            reader.skipValue();
+        }
+        throw new JsonParseException("Field \"" + name + "\" of \"" + path + "\" not found");
+    }
+
+    private static final class ArrayState {
+
+        final ResponseBody body;
+        final JsonReader reader;
+
+        ArrayState(ResponseBody body, JsonReader reader) {
+            this.body = body;
+            this.reader = reader;
+        }
+
+        void close() {
+            // 提前取消时丢弃剩余的响应
+            body.close();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.depp.devbase.network;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 逐个解析响应中的JSON数组，接口返回{@code Flowable<T>}，需要同时添加{@link retrofit2.http.Streaming}
+ * <p>
+ * 例如：{@code @Streaming @StreamJson("data.list") @GET("sync") Flowable<Item> sync();}
+ * 每次请求一个元素时才从网络读取并解析下一个，整个响应不会同时在内存中。
+ * 日志级别为BODY时HttpLoggingInterceptor仍会读取整个响应。
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StreamJson {
+
+    /**
+     * 数组在响应中的路径，用"."分隔对象的字段名，空字符串表示响应本身是数组
+     */
+    String value() default "";
+}
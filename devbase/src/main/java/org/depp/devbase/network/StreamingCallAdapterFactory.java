@@ -0,0 +1,111 @@
+package org.depp.devbase.network;
+
+import android.support.annotation.Nullable;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.HttpException;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.http.Streaming;
+
+/**
+ * 处理{@link StreamJson}接口，返回逐个解析的{@code Flowable<T>}
+ * <p>
+ * 没有{@link StreamJson}的接口交给后面的Factory。请求失败（非2xx）时返回{@link HttpException}。
+ * </p>
+ */
+public final class StreamingCallAdapterFactory extends CallAdapter.Factory {
+
+    private final Gson gson;
+    @Nullable
+    private final Scheduler scheduler;
+
+    /**
+     * 在订阅的线程请求和解析
+     */
+    public static StreamingCallAdapterFactory create(Gson gson) {
+        return new StreamingCallAdapterFactory(gson, null);
+    }
+
+    /**
+     * @param scheduler 请求和解析的线程，例如Schedulers.io()
+     */
+    public static StreamingCallAdapterFactory create(Gson gson, @Nullable Scheduler scheduler) {
+        return new StreamingCallAdapterFactory(gson, scheduler);
+    }
+
+    private StreamingCallAdapterFactory(Gson gson, @Nullable Scheduler scheduler) {
+        this.gson = gson;
+        this.scheduler = scheduler;
+    }
+
+    @Nullable
+    @Override
+    public CallAdapter<?, ?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        StreamJson streamJson = null;
+        boolean streaming = false;
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof StreamJson) {
+                streamJson = (StreamJson) annotation;
+            } else if (annotation instanceof Streaming) {
+                streaming = true;
+            }
+        }
+        if (streamJson == null) {
+            return null;
+        }
+        if (getRawType(returnType) != Flowable.class || !(returnType instanceof ParameterizedType)) {
+            throw new IllegalArgumentException("@StreamJson method must return Flowable<T>");
+        }
+        if (!streaming) {
+            // 没有@Streaming时Retrofit会先把整个响应读入内存
+            throw new IllegalArgumentException("@StreamJson method must also be annotated with @Streaming");
+        }
+        Type elementType = getParameterUpperBound(0, (ParameterizedType) returnType);
+        return new StreamingCallAdapter(elementType, streamJson.value());
+    }
+
+    private final class StreamingCallAdapter implements CallAdapter<ResponseBody, Flowable<?>> {
+
+        private final Type elementType;
+        private final String path;
+
+        StreamingCallAdapter(Type elementType, String path) {
+            this.elementType = elementType;
+            this.path = path;
+        }
+
+        @Override
+        public Type responseType() {
+            return ResponseBody.class;
+        }
+
+        @Override
+        public Flowable<?> adapt(final Call<ResponseBody> call) {
+            Flowable<?> flowable = ResponseStreams.jsonArray(() -> {
+                // 每次订阅都是新的请求
+                Response<ResponseBody> response = call.clone().execute();
+                if (!response.isSuccessful()) {
+                    throw new HttpException(response);
+                }
+                ResponseBody body = response.body();
+                if (body == null) {
+                    throw new IOException("Response body is empty");
+                }
+                return body;
+            }, gson, elementType, path);
+            return scheduler == null ? flowable : flowable.subscribeOn(scheduler);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.depp.devbase.paging;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import org.depp.devbase.network.ResponseCache;
+
+import java.io.File;
+import java.lang.reflect.Type;
+
+/**
+ * 保存在磁盘的页缓存，JSON序列化，不占用常驻内存
+ * <p>
+ * 1.pageType需要包含泛型参数：{@code new TypeToken<Page<String, Feed>>() {}.getType()}
+ * 2.namespace区分不同的列表（例如列表类型+用户ID），每个namespace使用单独的目录，{@link #clear()}只清空自己的页。
+ * 3.超过{@link #setMaxAge(long)}的页不再使用，默认{@link #DEFAULT_MAX_AGE_MS}。
+ * </p>
+ */
+public class DiskPageCache<K, T> implements PageCache<K, T> {
+
+    public static final long DEFAULT_DISK_SIZE = 20 * 1024 * 1024;
+    public static final long DEFAULT_MAX_AGE_MS = 24 * 60 * 60 * 1000;
+    /**
+     * 内存只保留最近的少量JSON
+     */
+    private static final int MEMORY_SIZE = 64 * 1024;
+
+    private final ResponseCache cache;
+    private final Gson gson;
+    private final String namespace;
+    private final Type pageType;
+    private volatile long maxAgeMs = DEFAULT_MAX_AGE_MS;
+
+    /**
+     * @param directory 所有列表共用的根目录，在其中为namespace创建子目录
+     * @param namespace 区分不同的列表，需要可以作为文件名
+     * @param pageType  ~
+     */
+    public DiskPageCache(@NonNull File directory, @NonNull String namespace, @NonNull Type pageType) {
+        this(new ResponseCache(new File(directory, namespace), MEMORY_SIZE, DEFAULT_DISK_SIZE), new Gson(), namespace, pageType);
+    }
+
+    /**
+     * @param cache     只给这个列表使用，{@link #clear()}会清空整个cache
+     * @param gson      ~
+     * @param namespace 区分不同的列表
+     * @param pageType  ~
+     */
+    public DiskPageCache(@NonNull ResponseCache cache, @NonNull Gson gson, @NonNull String namespace, @NonNull Type pageType) {
+        this.cache = cache;
+        this.gson = gson;
+        this.namespace = namespace;
+        this.pageType = pageType;
+    }
+
+    /**
+     * 页的最长保存时间，超过后不再使用，0表示不过期
+     */
+    public DiskPageCache<K, T> setMaxAge(long maxAgeMs) {
+        this.maxAgeMs = maxAgeMs;
+        return this;
+    }
+
+    @Nullable
+    @Override
+    public Page<K, T> get(@Nullable K key) {
+        ResponseCache.Entry entry = cache.get(keyOf(key));
+        if (entry == null) {
+            return null;
+        }
+        if (maxAgeMs > 0 && entry.getAgeMillis() > maxAgeMs) {
+            cache.remove(keyOf(key));
+            return null;
+        }
+        try {
+            return gson.fromJson(entry.json, pageType);
+        } catch (JsonParseException e) {
+            e.printStackTrace();
+            cache.remove(keyOf(key));
+            return null;
+        }
+    }
+
+    @Override
+    public void put(@Nullable K key, Page<K, T> page) {
+        cache.put(keyOf(key), gson.toJson(page, pageType));
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    private String keyOf(Object key) {
+        return "page:" + namespace + ":" + (key == null ? "first" : "key:" + key);
+    }
+}
@@ -0,0 +1,25 @@
+package org.depp.devbase.paging;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * 一页数据
+ */
+public final class Page<K, T> {
+
+    @NonNull
+    public final List<T> items;
+    /**
+     * 下一页的Key，null表示没有下一页
+     */
+    @Nullable
+    public final K nextKey;
+
+    public Page(@NonNull List<T> items, @Nullable K nextKey) {
+        this.items = items;
+        this.nextKey = nextKey;
+    }
+}
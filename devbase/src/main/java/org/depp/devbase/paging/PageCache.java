@@ -0,0 +1,20 @@
+package org.depp.devbase.paging;
+
+import android.support.annotation.Nullable;
+
+/**
+ * 页缓存，在io线程调用
+ */
+public interface PageCache<K, T> {
+
+    /**
+     * @param key null表示第一页
+     * @return null表示没有缓存
+     */
+    @Nullable
+    Page<K, T> get(@Nullable K key);
+
+    void put(@Nullable K key, Page<K, T> page);
+
+    void clear();
+}
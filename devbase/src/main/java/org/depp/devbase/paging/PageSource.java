@@ -0,0 +1,23 @@
+package org.depp.devbase.paging;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import io.reactivex.Observable;
+
+/**
+ * 按Key分页的数据来源，通常直接返回Retrofit接口：
+ * {@code (key, pageSize) -> api.feed(key, pageSize).map(resp -> new Page<>(resp.list, resp.next))}
+ */
+public interface PageSource<K, T> {
+
+    /**
+     * 加载一页，只取第一个结果，在io线程订阅
+     *
+     * @param key      null表示第一页
+     * @param pageSize ~
+     * @return ~
+     */
+    @NonNull
+    Observable<Page<K, T>> load(@Nullable K key, int pageSize);
+}
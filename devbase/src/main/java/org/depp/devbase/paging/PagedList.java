@@ -0,0 +1,475 @@
+package org.depp.devbase.paging;
+
+import android.databinding.ListChangeRegistry;
+import android.databinding.ObservableList;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.StaggeredGridLayoutManager;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * 分页加载的列表，可直接作为{@code app:items}
+ * <p>
+ * 1.滚动到距离末尾{@link #setPrefetchDistance(int)}项以内时加载下一页，通过{@link #attachTo(RecyclerView)}根据可见位置触发。
+ * 2.内存中最多保留{@link #setMaxPages(int)}页，可见的页总是保留，其余名额分给可见范围前后；
+ * 远离可见范围的页只保留数量，对应位置返回null（需要占位布局），滚动回来时重新加载。
+ * 3.设置{@link PageCache}后，加载的页同时写入缓存，重新加载时优先读取缓存，网络失败时也使用缓存；
+ * {@link #refresh()}的第一页从网络加载成功后清空旧的缓存。
+ * 所有方法需要在主线程调用。
+ * </p>
+ */
+public class PagedList<K, T> extends AbstractList<T> implements ObservableList<T> {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int DEFAULT_MAX_PAGES = 5;
+
+    public interface OnLoadStateListener {
+
+        /**
+         * @param loading 是否正在加载下一页
+         * @param error   最后一次加载的错误，成功时为null
+         */
+        void onLoadStateChanged(boolean loading, @Nullable Throwable error);
+    }
+
+    private final PageSource<K, T> source;
+    private final ListChangeRegistry registry = new ListChangeRegistry();
+    private final ArrayList<PageHolder<K, T>> pages = new ArrayList<>();
+    private final CompositeDisposable disposables = new CompositeDisposable();
+
+    private PageCache<K, T> pageCache;
+    private OnLoadStateListener loadStateListener;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int prefetchDistance = DEFAULT_PAGE_SIZE;
+    private int maxPages = DEFAULT_MAX_PAGES;
+
+    private int size;
+    private K nextKey;
+    private boolean endReached;
+    private boolean appending;
+    private Throwable lastError;
+    private int firstVisible;
+    private int lastVisible;
+    private Disposable appendDisposable;
+    /**
+     * refresh后旧的加载结果直接丢弃
+     */
+    private int generation;
+
+    public PagedList(@NonNull PageSource<K, T> source) {
+        this.source = source;
+    }
+
+    public PagedList<K, T> setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * 距离末尾多少项时加载下一页，默认一页
+     */
+    public PagedList<K, T> setPrefetchDistance(int prefetchDistance) {
+        this.prefetchDistance = prefetchDistance;
+        return this;
+    }
+
+    /**
+     * 内存中最多保留的页数，至少3页
+     */
+    public PagedList<K, T> setMaxPages(int maxPages) {
+        this.maxPages = Math.max(3, maxPages);
+        return this;
+    }
+
+    public PagedList<K, T> setPageCache(@Nullable PageCache<K, T> pageCache) {
+        this.pageCache = pageCache;
+        return this;
+    }
+
+    public PagedList<K, T> setOnLoadStateListener(@Nullable OnLoadStateListener loadStateListener) {
+        this.loadStateListener = loadStateListener;
+        return this;
+    }
+
+    /**
+     * 加载第一页，已经加载过时不做任何事
+     */
+    public void start() {
+        if (pages.isEmpty() && !appending) {
+            loadNext(false);
+        }
+    }
+
+    /**
+     * 清空并重新加载第一页，网络优先，成功后清空页缓存
+     */
+    public void refresh() {
+        generation++;
+        disposables.clear();
+        int oldSize = size;
+        pages.clear();
+        size = 0;
+        nextKey = null;
+        endReached = false;
+        appending = false;
+        lastError = null;
+        firstVisible = 0;
+        lastVisible = 0;
+        if (oldSize > 0) {
+            registry.notifyRemoved(this, 0, oldSize);
+        }
+        loadNext(true);
+    }
+
+    /**
+     * 加载失败后重试下一页
+     */
+    public void retry() {
+        if (lastError != null && !appending) {
+            lastError = null;
+            loadNext(false);
+        }
+    }
+
+    /**
+     * 取消所有加载，页面销毁时调用
+     */
+    public void release() {
+        disposables.clear();
+        appending = false;
+        for (PageHolder<K, T> page : pages) {
+            page.loading = false;
+            page.disposable = null;
+        }
+    }
+
+    public boolean isEndReached() {
+        return endReached;
+    }
+
+    /**
+     * 只有一个位置时使用，等同于{@code loadAround(position, position)}
+     *
+     * @param position 可见项的位置
+     */
+    public void loadAround(int position) {
+        loadAround(position, position);
+    }
+
+    /**
+     * 根据可见范围预加载下一页，并释放远离的页、重新加载回到窗口的页
+     *
+     * @param firstPosition 第一个可见项的位置
+     * @param lastPosition  最后一个可见项的位置
+     */
+    public void loadAround(int firstPosition, int lastPosition) {
+        firstVisible = Math.min(firstPosition, lastPosition);
+        lastVisible = Math.max(firstPosition, lastPosition);
+        if (!appending && !endReached && lastError == null && lastVisible >= size - prefetchDistance) {
+            loadNext(false);
+        }
+        if (pages.isEmpty()) {
+            return;
+        }
+        int maxIndex = Math.max(size - 1, 0);
+        int firstPage = pageIndexOf(Math.min(Math.max(firstVisible, 0), maxIndex));
+        int lastPage = pageIndexOf(Math.min(Math.max(lastVisible, 0), maxIndex));
+        // 可见的页都保留，剩余的名额前后平分
+        int extra = Math.max(0, maxPages - (lastPage - firstPage + 1));
+        int windowStart = firstPage - extra / 2;
+        int windowEnd = lastPage + (extra - extra / 2);
+        for (int i = 0; i < pages.size(); i++) {
+            PageHolder<K, T> page = pages.get(i);
+            if (i < windowStart || i > windowEnd) {
+                if (page.items != null || page.loading) {
+                    drop(page);
+                }
+            } else if (page.items == null && !page.loading) {
+                reload(page);
+            }
+        }
+    }
+
+    /**
+     * 滚动时调用{@link #loadAround(int, int)}，支持LinearLayoutManager和StaggeredGridLayoutManager
+     *
+     * @param recyclerView ~
+     */
+    public void attachTo(@NonNull RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(new PrefetchScrollListener(this));
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        PageHolder<K, T> page = pages.get(pageIndexOf(index));
+        return page.items == null ? null : page.items.get(index - page.start);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void addOnListChangedCallback(OnListChangedCallback<? extends ObservableList<T>> callback) {
+        registry.add(callback);
+    }
+
+    @Override
+    public void removeOnListChangedCallback(OnListChangedCallback<? extends ObservableList<T>> callback) {
+        registry.remove(callback);
+    }
+
+    private int pageIndexOf(int position) {
+        int low = 0;
+        int high = pages.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (pages.get(mid).start <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param clearCache 从网络加载成功后先清空页缓存，refresh时使用
+     */
+    private void loadNext(boolean clearCache) {
+        final K key = nextKey;
+        final int runGeneration = generation;
+        appending = true;
+        notifyLoadState();
+        appendDisposable = request(key, false, clearCache)
+                .subscribe(page -> {
+                    if (runGeneration != generation) {
+                        return;
+                    }
+                    disposables.delete(appendDisposable);
+                    appending = false;
+                    lastError = null;
+                    PageHolder<K, T> holder = new PageHolder<>(key, size);
+                    holder.items = page.items;
+                    holder.count = page.items.size();
+                    pages.add(holder);
+                    size += holder.count;
+                    nextKey = page.nextKey;
+                    endReached = page.nextKey == null;
+                    if (holder.count > 0) {
+                        registry.notifyInserted(this, holder.start, holder.count);
+                    }
+                    notifyLoadState();
+                    // 新的一页可能让前面的页离开窗口
+                    loadAround(firstVisible, lastVisible);
+                }, error -> {
+                    if (runGeneration != generation) {
+                        return;
+                    }
+                    disposables.delete(appendDisposable);
+                    appending = false;
+                    lastError = error;
+                    notifyLoadState();
+                });
+        disposables.add(appendDisposable);
+    }
+
+    private void reload(final PageHolder<K, T> page) {
+        final int runGeneration = generation;
+        page.loading = true;
+        page.disposable = request(page.key, true, false)
+                .subscribe(loaded -> {
+                    if (runGeneration != generation || !page.loading) {
+                        return;
+                    }
+                    page.loading = false;
+                    disposables.delete(page.disposable);
+                    page.disposable = null;
+                    replace(page, loaded.items);
+                }, error -> {
+                    // 保持占位，下次滚动到这里时再加载
+                    if (page.disposable != null) {
+                        disposables.delete(page.disposable);
+                        page.disposable = null;
+                    }
+                    page.loading = false;
+                    error.printStackTrace();
+                });
+        disposables.add(page.disposable);
+    }
+
+    private void drop(PageHolder<K, T> page) {
+        if (page.loading) {
+            page.loading = false;
+            if (page.disposable != null) {
+                disposables.remove(page.disposable);
+                page.disposable = null;
+            }
+        }
+        if (page.items != null) {
+            page.items = null;
+            if (page.count > 0) {
+                registry.notifyChanged(this, page.start, page.count);
+            }
+        }
+    }
+
+    /**
+     * 重新加载的页数量可能和之前不同
+     */
+    private void replace(PageHolder<K, T> page, List<T> items) {
+        int oldCount = page.count;
+        int newCount = items.size();
+        page.items = items;
+        page.count = newCount;
+        int common = Math.min(oldCount, newCount);
+        if (common > 0) {
+            registry.notifyChanged(this, page.start, common);
+        }
+        if (newCount == oldCount) {
+            return;
+        }
+        size += newCount - oldCount;
+        int start = page.start + newCount;
+        for (int i = pages.indexOf(page) + 1; i < pages.size(); i++) {
+            PageHolder<K, T> next = pages.get(i);
+            next.start = start;
+            start += next.count;
+        }
+        if (newCount > oldCount) {
+            registry.notifyInserted(this, page.start + oldCount, newCount - oldCount);
+        } else {
+            registry.notifyRemoved(this, page.start + newCount, oldCount - newCount);
+        }
+    }
+
+    /**
+     * @param cacheFirst true时先读缓存，否则网络失败时才读缓存
+     * @param clearCache 网络成功时先清空缓存，网络失败时仍然可以读取旧的缓存
+     */
+    private Observable<Page<K, T>> request(final K key, boolean cacheFirst, final boolean clearCache) {
+        final PageCache<K, T> cache = pageCache;
+        Observable<Page<K, T>> network = source.load(key, pageSize).take(1);
+        if (cache != null) {
+            network = network.doOnNext(page -> {
+                if (clearCache) {
+                    cache.clear();
+                }
+                cache.put(key, page);
+            });
+            Observable<Page<K, T>> cached = Maybe.fromCallable(() -> cache.get(key)).toObservable();
+            network = cacheFirst
+                    ? cached.switchIfEmpty(network)
+                    : network.onErrorResumeNext((Throwable error) -> cached.switchIfEmpty(Observable.error(error)));
+        }
+        return network.subscribeOn(Schedulers.io()).observeOn(AndroidSchedulers.mainThread());
+    }
+
+    private void notifyLoadState() {
+        if (loadStateListener != null) {
+            loadStateListener.onLoadStateChanged(appending, lastError);
+        }
+    }
+
+    private static final class PageHolder<K, T> {
+
+        final K key;
+        int start;
+        int count;
+        /**
+         * null表示已释放或还没加载
+         */
+        List<T> items;
+        boolean loading;
+        Disposable disposable;
+
+        PageHolder(K key, int start) {
+            this.key = key;
+            this.start = start;
+        }
+    }
+
+    /**
+     * 滚动时按可见范围预加载，post到下一次消息循环，避免在布局过程中更新列表
+     */
+    private static final class PrefetchScrollListener extends RecyclerView.OnScrollListener {
+
+        private final PagedList<?, ?> list;
+        private int pendingFirst = RecyclerView.NO_POSITION;
+        private int pendingLast = RecyclerView.NO_POSITION;
+
+        PrefetchScrollListener(PagedList<?, ?> list) {
+            this.list = list;
+        }
+
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+            int last = findLastVisibleItemPosition(layoutManager);
+            if (last == RecyclerView.NO_POSITION) {
+                return;
+            }
+            int first = findFirstVisibleItemPosition(layoutManager);
+            boolean scheduled = pendingLast != RecyclerView.NO_POSITION;
+            pendingFirst = first == RecyclerView.NO_POSITION ? last : first;
+            pendingLast = last;
+            if (!scheduled) {
+                recyclerView.post(() -> {
+                    int targetFirst = pendingFirst;
+                    int targetLast = pendingLast;
+                    pendingFirst = RecyclerView.NO_POSITION;
+                    pendingLast = RecyclerView.NO_POSITION;
+                    list.loadAround(targetFirst, targetLast);
+                });
+            }
+        }
+
+        private static int findFirstVisibleItemPosition(RecyclerView.LayoutManager layoutManager) {
+            if (layoutManager instanceof LinearLayoutManager) {
+                return ((LinearLayoutManager) layoutManager).findFirstVisibleItemPosition();
+            }
+            if (layoutManager instanceof StaggeredGridLayoutManager) {
+                int[] positions = ((StaggeredGridLayoutManager) layoutManager).findFirstVisibleItemPositions(null);
+                int first = RecyclerView.NO_POSITION;
+                for (int position : positions) {
+                    if (position != RecyclerView.NO_POSITION && (first == RecyclerView.NO_POSITION || position < first)) {
+                        first = position;
+                    }
+                }
+                return first;
+            }
+            return RecyclerView.NO_POSITION;
+        }
+
+        private static int findLastVisibleItemPosition(RecyclerView.LayoutManager layoutManager) {
+            if (layoutManager instanceof LinearLayoutManager) {
+                return ((LinearLayoutManager) layoutManager).findLastVisibleItemPosition();
+            }
+            if (layoutManager instanceof StaggeredGridLayoutManager) {
+                int[] positions = ((StaggeredGridLayoutManager) layoutManager).findLastVisibleItemPositions(null);
+                int last = RecyclerView.NO_POSITION;
+                for (int position : positions) {
+                    last = Math.max(last, position);
+                }
+                return last;
+            }
+            return RecyclerView.NO_POSITION;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package org.depp.devbase.permission;
+
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentActivity;
+import android.support.v4.app.FragmentManager;
+import android.support.v4.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import io.reactivex.Observable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.subjects.AsyncSubject;
+
+/**
+ * 合并的权限请求
+ * <p>
+ * 1.每个Activity一个不可见的Fragment，Activity和其中所有Fragment共用，同一次消息循环中的请求合并成一个系统对话框。
+ * 2.已经在请求中的权限不会重复弹出，后来的请求共享同一个结果；对话框显示期间的新请求在结果返回后再一起请求。
+ * 3.只缓存已允许的权限（撤销权限会结束进程，缓存总是有效），未允许的每次重新检查，从系统设置返回后立即生效。
+ * 4.{@link #request(String...)}返回每个权限一个{@link PermissionResult}，全部返回后结束。
+ * 所有方法需要在主线程调用。
+ * </p>
+ */
+public class PermissionEngine extends Fragment {
+
+    private static final String TAG = "org.depp.devbase.permission.PermissionEngine";
+    private static final int REQUEST_CODE = 0x7E57;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * 已允许的权限
+     */
+    private final HashSet<String> grantCache = new HashSet<>();
+    private final HashMap<String, AsyncSubject<PermissionResult>> pending = new HashMap<>();
+    private final LinkedHashSet<String> batch = new LinkedHashSet<>();
+    private final Runnable flushRunnable = this::flush;
+    private String[] requestingPerms = new String[0];
+    private boolean requesting;
+    private boolean flushScheduled;
+
+    /**
+     * 获取Activity的权限请求，没有则添加
+     *
+     * @param activity ~
+     * @return ~
+     */
+    public static PermissionEngine get(@NonNull FragmentActivity activity) {
+        FragmentManager fragmentManager = activity.getSupportFragmentManager();
+        PermissionEngine engine = (PermissionEngine) fragmentManager.findFragmentByTag(TAG);
+        if (engine == null) {
+            engine = new PermissionEngine();
+            fragmentManager.beginTransaction().add(engine, TAG).commitNowAllowingStateLoss();
+        }
+        return engine;
+    }
+
+    /**
+     * Fragment中使用所在Activity的权限请求，和Activity及其他Fragment的请求合并
+     *
+     * @param fragment ~
+     * @return ~
+     */
+    public static PermissionEngine get(@NonNull Fragment fragment) {
+        return get(fragment.requireActivity());
+    }
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        // 旋转屏幕时保留进行中的请求
+        setRetainInstance(true);
+    }
+
+    /**
+     * 权限是否已经允许，只缓存已允许的结果
+     *
+     * @param perm ~
+     * @return ~
+     */
+    public boolean isGranted(@NonNull String perm) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return true;
+        }
+        if (grantCache.contains(perm)) {
+            return true;
+        }
+        boolean granted = ContextCompat.checkSelfPermission(requireContext(), perm) == PackageManager.PERMISSION_GRANTED;
+        if (granted) {
+            grantCache.add(perm);
+        }
+        return granted;
+    }
+
+    /**
+     * 没有允许的权限
+     *
+     * @param perms ~
+     * @return 没有时为空列表
+     */
+    public List<String> getDeniedPermissions(@NonNull String... perms) {
+        List<String> denied = new ArrayList<>();
+        for (String perm : perms) {
+            if (!isGranted(perm)) {
+                denied.add(perm);
+            }
+        }
+        return denied;
+    }
+
+    /**
+     * 请求权限，订阅时开始
+     *
+     * @param perms ~
+     * @return 每个权限一个结果，顺序不保证与参数一致
+     */
+    public Observable<PermissionResult> request(@NonNull final String... perms) {
+        return Observable.defer(() -> {
+            List<Observable<PermissionResult>> results = new ArrayList<>(perms.length);
+            for (String perm : perms) {
+                results.add(requestOne(perm));
+            }
+            return Observable.merge(results);
+        }).subscribeOn(AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * 请求权限，全部允许时为true
+     *
+     * @param perms ~
+     * @return ~
+     */
+    public Observable<Boolean> requestAll(@NonNull String... perms) {
+        return request(perms).all(result -> result.granted).toObservable();
+    }
+
+    private Observable<PermissionResult> requestOne(String perm) {
+        if (isGranted(perm)) {
+            return Observable.just(new PermissionResult(perm, true, false));
+        }
+        AsyncSubject<PermissionResult> subject = pending.get(perm);
+        if (subject == null) {
+            subject = AsyncSubject.create();
+            pending.put(perm, subject);
+            batch.add(perm);
+            scheduleFlush();
+        }
+        return subject;
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled && !requesting) {
+            flushScheduled = true;
+            // 等同一次消息循环中的其他请求
+            mainHandler.post(flushRunnable);
+        }
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        if (requesting || batch.isEmpty()) {
+            return;
+        }
+        if (!isAdded()) {
+            // 还没添加或已经移除，Activity恢复后再请求
+            return;
+        }
+        requesting = true;
+        requestingPerms = batch.toArray(new String[batch.size()]);
+        batch.clear();
+        requestPermissions(requestingPerms, REQUEST_CODE);
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        if (requestCode != REQUEST_CODE) {
+            return;
+        }
+        requesting = false;
+        for (int i = 0; i < permissions.length && i < grantResults.length; i++) {
+            boolean granted = grantResults[i] == PackageManager.PERMISSION_GRANTED;
+            if (granted) {
+                grantCache.add(permissions[i]);
+            }
+            deliver(permissions[i], granted);
+        }
+        // 对话框被打断时没有结果，按拒绝处理，不缓存
+        for (String perm : requestingPerms) {
+            deliver(perm, false);
+        }
+        requestingPerms = new String[0];
+        if (!batch.isEmpty()) {
+            scheduleFlush();
+        }
+    }
+
+    private void deliver(String perm, boolean granted) {
+        AsyncSubject<PermissionResult> subject = pending.remove(perm);
+        if (subject != null) {
+            subject.onNext(new PermissionResult(perm, granted, !granted && shouldShowRequestPermissionRationale(perm)));
+            subject.onComplete();
+        }
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        if (!batch.isEmpty()) {
+            scheduleFlush();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.depp.devbase.permission;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.PermissionInfo;
+import android.support.v4.os.ConfigurationCompat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 权限组名称缓存
+ * <p>
+ * 1.权限→权限组、权限组→名称分别缓存，每个进程只查询一次PackageManager，之后都是HashMap查找。
+ * 2.名称和语言有关，语言变化时只清空名称缓存。
+ * 3.单个权限查询失败只跳过这个权限，失败结果不缓存，例如之后安装的应用定义的权限下次可以查到。
+ * </p>
+ */
+final class PermissionGroupCache {
+
+    /**
+     * 查询失败，不缓存
+     */
+    private static final String UNKNOWN = "";
+    /**
+     * 没有权限组的权限直接使用权限本身的名称
+     */
+    private static final String SELF_PREFIX = "self:";
+
+    private static final ConcurrentHashMap<String, String> permissionGroups = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, String> labels = new ConcurrentHashMap<>();
+    private static volatile Locale labelLocale;
+
+    private PermissionGroupCache() {
+    }
+
+    /**
+     * 权限组名称，按权限顺序去重
+     */
+    static List<String> resolve(Context context, Collection<String> perms) {
+        checkLocale(context);
+        PackageManager packageManager = context.getPackageManager();
+        LinkedHashSet<String> names = new LinkedHashSet<>();
+        for (String perm : perms) {
+            String group = getGroup(packageManager, perm);
+            if (group.equals(UNKNOWN)) {
+                continue;
+            }
+            String label = getLabel(packageManager, group);
+            if (!label.equals(UNKNOWN)) {
+                names.add(label);
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * 预先查询应用声明的危险权限，需要在后台线程调用
+     */
+    static void prewarm(Context context) {
+        PackageManager packageManager = context.getPackageManager();
+        String[] requested;
+        try {
+            PackageInfo packageInfo = packageManager.getPackageInfo(context.getPackageName(), PackageManager.GET_PERMISSIONS);
+            requested = packageInfo.requestedPermissions;
+        } catch (PackageManager.NameNotFoundException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (requested == null) {
+            return;
+        }
+        checkLocale(context);
+        for (String perm : requested) {
+            PermissionInfo info;
+            try {
+                info = packageManager.getPermissionInfo(perm, 0);
+            } catch (PackageManager.NameNotFoundException e) {
+                continue;
+            }
+            if ((info.protectionLevel & PermissionInfo.PROTECTION_MASK_BASE) != PermissionInfo.PROTECTION_DANGEROUS) {
+                continue;
+            }
+            // 直接使用已经查询到的PermissionInfo，不再重复查询
+            String group = groupOf(info);
+            permissionGroups.put(perm, group);
+            if (info.group == null && !labels.containsKey(group)) {
+                CharSequence loaded = info.loadLabel(packageManager);
+                if (loaded != null) {
+                    labels.put(group, loaded.toString());
+                }
+            } else {
+                getLabel(packageManager, group);
+            }
+        }
+    }
+
+    private static String groupOf(PermissionInfo permissionInfo) {
+        return permissionInfo.group != null ? permissionInfo.group : SELF_PREFIX + permissionInfo.name;
+    }
+
+    private static void checkLocale(Context context) {
+        Locale locale = ConfigurationCompat.getLocales(context.getResources().getConfiguration()).get(0);
+        if (!locale.equals(labelLocale)) {
+            labels.clear();
+            labelLocale = locale;
+        }
+    }
+
+    private static String getGroup(PackageManager packageManager, String perm) {
+        String group = permissionGroups.get(perm);
+        if (group != null) {
+            return group;
+        }
+        try {
+            group = groupOf(packageManager.getPermissionInfo(perm, 0));
+        } catch (PackageManager.NameNotFoundException e) {
+            e.printStackTrace();
+            return UNKNOWN;
+        }
+        permissionGroups.put(perm, group);
+        return group;
+    }
+
+    private static String getLabel(PackageManager packageManager, String group) {
+        String label = labels.get(group);
+        if (label != null) {
+            return label;
+        }
+        try {
+            CharSequence loaded;
+            if (group.startsWith(SELF_PREFIX)) {
+                loaded = packageManager.getPermissionInfo(group.substring(SELF_PREFIX.length()), 0).loadLabel(packageManager);
+            } else {
+                loaded = packageManager.getPermissionGroupInfo(group, 0).loadLabel(packageManager);
+            }
+            if (loaded == null) {
+                return UNKNOWN;
+            }
+            label = loaded.toString();
+        } catch (PackageManager.NameNotFoundException e) {
+            e.printStackTrace();
+            return UNKNOWN;
+        }
+        labels.put(group, label);
+        return label;
+    }
+}
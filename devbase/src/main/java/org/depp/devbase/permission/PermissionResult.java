@@ -0,0 +1,33 @@
+package org.depp.devbase.permission;
+
+/**
+ * 单个权限的请求结果
+ */
+public final class PermissionResult {
+
+    public final String name;
+    public final boolean granted;
+    /**
+     * 被拒绝且系统建议显示说明，false且没有允许表示勾选了"不再询问"
+     */
+    public final boolean shouldShowRequestPermissionRationale;
+
+    public PermissionResult(String name, boolean granted, boolean shouldShowRequestPermissionRationale) {
+        this.name = name;
+        this.granted = granted;
+        this.shouldShowRequestPermissionRationale = shouldShowRequestPermissionRationale;
+    }
+
+    /**
+     * 勾选了"不再询问"
+     */
+    public boolean isPermanentlyDenied() {
+        return !granted && !shouldShowRequestPermissionRationale;
+    }
+
+    @Override
+    public String toString() {
+        return "PermissionResult{" + name + ", granted=" + granted
+                + ", shouldShowRequestPermissionRationale=" + shouldShowRequestPermissionRationale + '}';
+    }
+}
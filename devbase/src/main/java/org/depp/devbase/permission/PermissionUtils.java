@@ -5,8 +5,6 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.pm.PackageManager;
-import android.content.pm.PermissionGroupInfo;
-import android.content.pm.PermissionInfo;
 import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -14,6 +12,8 @@ import android.support.v4.app.ActivityCompat;
 import android.support.v4.app.Fragment;
 import android.support.v4.content.ContextCompat;
 
+import org.depp.devbase.utils.MainThreadWatchdog;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -167,6 +167,7 @@ public class PermissionUtils {
      * 找出权限所属组别名称
      * <p>
      * 实际上到系统-应用-权限下打开对应的权限显示的是组名。
+     * 结果按进程和语言缓存，查询失败的权限会被跳过。
      * </p>
      *
      * @param context ~
@@ -178,22 +179,24 @@ public class PermissionUtils {
         if (perms.isEmpty()) {
             return null;
         }
-        List<String> permsGroupName = new ArrayList<>(perms.size());
-        try {
-            for (String perm : perms) {
-                PermissionInfo permissionInfo = context.getPackageManager().getPermissionInfo(perm, PackageManager.GET_META_DATA);
-                PermissionGroupInfo permissionGroupInfo = context.getPackageManager().getPermissionGroupInfo(permissionInfo.group, PackageManager.GET_META_DATA);
-                String permissionName = (String) permissionGroupInfo.loadLabel(context.getPackageManager());
-                if (!permsGroupName.contains(permissionName)) {
-                    permsGroupName.add(permissionName);
-                }
-            }
-        } catch (PackageManager.NameNotFoundException e) {
-            e.printStackTrace();
-        }
+        long token = MainThreadWatchdog.begin();
+        List<String> permsGroupName = PermissionGroupCache.resolve(context.getApplicationContext(), perms);
+        MainThreadWatchdog.end("PermissionUtils.loadPermissionsGroupName", token);
         return permsGroupName;
     }
 
+    /**
+     * 在后台线程预先查询应用声明的危险权限的组名称，之后{@link #loadPermissionsGroupName}只需要查找缓存
+     *
+     * @param context ~
+     */
+    public static void prewarmPermissionsGroupName(@NonNull Context context) {
+        final Context appContext = context.getApplicationContext();
+        Thread thread = new Thread(() -> PermissionGroupCache.prewarm(appContext), "PermissionPrewarm");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
     @TargetApi(M)
     private static boolean shouldShowRequestPermissionRationale(Object object, String perm) {
         if (object instanceof Activity) {
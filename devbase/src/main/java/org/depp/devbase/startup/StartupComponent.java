@@ -0,0 +1,47 @@
+package org.depp.devbase.startup;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 启动组件
+ * <p>
+ * 声明依赖和执行线程，由{@link StartupRunner}按依赖关系执行：
+ * 没有依赖关系的组件在后台线程池并行执行，主线程组件只等待自己声明的依赖。
+ * </p>
+ */
+public abstract class StartupComponent {
+
+    /**
+     * 初始化，在{@link #runOnMainThread()}指定的线程调用
+     *
+     * @param context Application
+     */
+    public abstract void create(@NonNull Context context);
+
+    /**
+     * 依赖的组件，需要先执行完成
+     */
+    @NonNull
+    public List<Class<? extends StartupComponent>> getDependencies() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * 是否需要在主线程执行，默认在后台线程
+     */
+    public boolean runOnMainThread() {
+        return false;
+    }
+
+    /**
+     * 耗时报告中的名称
+     */
+    @NonNull
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,104 @@
+package org.depp.devbase.startup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 启动组件的依赖图，创建时检查缺少的依赖和循环依赖
+ */
+final class StartupGraph {
+
+    private static final int UNVISITED = 0;
+    private static final int VISITING = 1;
+    private static final int VISITED = 2;
+
+    final List<Node> nodes;
+
+    private StartupGraph(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * @throws IllegalArgumentException 重复添加、依赖没有添加
+     * @throws IllegalStateException    循环依赖
+     */
+    static StartupGraph build(List<StartupComponent> components) {
+        Map<Class<?>, Node> nodeMap = new LinkedHashMap<>();
+        for (StartupComponent component : components) {
+            if (nodeMap.put(component.getClass(), new Node(component)) != null) {
+                throw new IllegalArgumentException("重复添加启动组件 " + component.getName());
+            }
+        }
+        for (Node node : nodeMap.values()) {
+            for (Class<? extends StartupComponent> dependency : node.component.getDependencies()) {
+                Node dependencyNode = nodeMap.get(dependency);
+                if (dependencyNode == null) {
+                    throw new IllegalArgumentException(node.component.getName() + " 依赖的 " + dependency.getSimpleName() + " 没有添加");
+                }
+                node.dependencies.add(dependencyNode);
+                dependencyNode.dependents.add(node);
+            }
+            node.remaining.set(node.dependencies.size());
+        }
+        List<Node> nodes = new ArrayList<>(nodeMap.values());
+        checkCycle(nodes);
+        return new StartupGraph(nodes);
+    }
+
+    private static void checkCycle(List<Node> nodes) {
+        Map<Node, Integer> states = new LinkedHashMap<>();
+        List<Node> path = new ArrayList<>();
+        for (Node node : nodes) {
+            visit(node, states, path);
+        }
+    }
+
+    private static void visit(Node node, Map<Node, Integer> states, List<Node> path) {
+        Integer state = states.get(node);
+        if (state != null && state == VISITED) {
+            return;
+        }
+        path.add(node);
+        if (state != null && state == VISITING) {
+            StringBuilder cycle = new StringBuilder();
+            for (Node item : path.subList(path.indexOf(node), path.size())) {
+                if (cycle.length() > 0) {
+                    cycle.append(" -> ");
+                }
+                cycle.append(item.component.getName());
+            }
+            throw new IllegalStateException("启动组件循环依赖: " + cycle);
+        }
+        states.put(node, VISITING);
+        for (Node dependency : node.dependencies) {
+            visit(dependency, states, path);
+        }
+        states.put(node, VISITED);
+        path.remove(path.size() - 1);
+    }
+
+    static final class Node {
+
+        final StartupComponent component;
+        final List<Node> dependencies = new ArrayList<>();
+        final List<Node> dependents = new ArrayList<>();
+        /**
+         * 还没完成的依赖数量
+         */
+        final AtomicInteger remaining = new AtomicInteger();
+
+        volatile long readyTime;
+        volatile long startTime;
+        volatile long endTime;
+        volatile String threadName;
+        volatile boolean failed;
+        volatile boolean skipped;
+
+        Node(StartupComponent component) {
+            this.component = component;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.depp.devbase.startup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 启动耗时报告
+ * <p>
+ * 每个组件的开始时间（相对启动开始）、等待线程的时间、执行耗时，以及关键路径：
+ * 从最后完成的组件开始，每次选择最后完成的依赖，缩短这条路径上的组件才能缩短启动时间。
+ * </p>
+ */
+public final class StartupReport {
+
+    private final List<Entry> entries;
+    private final List<Entry> criticalPath;
+    private final long totalTime;
+    private final long mainBlockedTime;
+
+    StartupReport(List<StartupGraph.Node> nodes, long beginTime, long mainBlockedTime) {
+        List<Entry> entries = new ArrayList<>(nodes.size());
+        StartupGraph.Node last = null;
+        for (StartupGraph.Node node : nodes) {
+            entries.add(new Entry(node, beginTime));
+            if (last == null || node.endTime > last.endTime) {
+                last = node;
+            }
+        }
+        Collections.sort(entries, (left, right) -> Long.compare(left.startTime, right.startTime));
+        List<Entry> criticalPath = new ArrayList<>();
+        while (last != null) {
+            criticalPath.add(0, new Entry(last, beginTime));
+            StartupGraph.Node latest = null;
+            for (StartupGraph.Node dependency : last.dependencies) {
+                if (latest == null || dependency.endTime > latest.endTime) {
+                    latest = dependency;
+                }
+            }
+            last = latest;
+        }
+        this.entries = Collections.unmodifiableList(entries);
+        this.criticalPath = Collections.unmodifiableList(criticalPath);
+        this.totalTime = criticalPath.isEmpty() ? 0 : criticalPath.get(criticalPath.size() - 1).startTime
+                + criticalPath.get(criticalPath.size() - 1).duration;
+        this.mainBlockedTime = mainBlockedTime;
+    }
+
+    /**
+     * 所有组件，按开始时间排序
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * 关键路径，按执行顺序
+     */
+    public List<Entry> getCriticalPath() {
+        return criticalPath;
+    }
+
+    /**
+     * 从开始到全部完成的时间（毫秒）
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * 主线程等待后台依赖的时间（毫秒）
+     */
+    public long getMainBlockedTime() {
+        return mainBlockedTime;
+    }
+
+    /**
+     * 写入文本文件
+     *
+     * @param file ~
+     */
+    public void writeTo(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+            writer.write(toString());
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US, "total %dms, main blocked %dms%n", totalTime, mainBlockedTime));
+        for (Entry entry : entries) {
+            builder.append(String.format(Locale.US, "%-32s %-12s start %5dms wait %4dms cost %4dms%s%n",
+                    entry.name, entry.threadName, entry.startTime, entry.waitTime, entry.duration,
+                    entry.skipped ? " SKIPPED" : entry.failed ? " FAILED" : ""));
+        }
+        builder.append("critical path:");
+        for (int i = 0; i < criticalPath.size(); i++) {
+            builder.append(i == 0 ? " " : " -> ").append(criticalPath.get(i).name);
+        }
+        return builder.append('\n').toString();
+    }
+
+    public static final class Entry {
+
+        public final String name;
+        public final String threadName;
+        /**
+         * 相对启动开始的时间（毫秒）
+         */
+        public final long startTime;
+        /**
+         * 依赖完成后等待线程的时间（毫秒）
+         */
+        public final long waitTime;
+        public final long duration;
+        public final boolean failed;
+        /**
+         * 依赖失败而没有执行
+         */
+        public final boolean skipped;
+
+        Entry(StartupGraph.Node node, long beginTime) {
+            this.name = node.component.getName();
+            this.threadName = node.threadName;
+            this.startTime = node.startTime - beginTime;
+            this.waitTime = node.startTime - node.readyTime;
+            this.duration = node.endTime - node.startTime;
+            this.failed = node.failed;
+            this.skipped = node.skipped;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.depp.devbase.startup;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按依赖关系执行启动组件
+ * <p>
+ * 1.开始前检查依赖图，缺少依赖或循环依赖直接抛出异常。
+ * 2.后台组件在有界线程池中执行，依赖完成后立即开始，互不依赖的组件并行执行。
+ * 3.{@link #run}在主线程阻塞，直到所有主线程组件执行完成，主线程组件只等待自己声明的依赖；
+ * 不被主线程组件依赖的后台组件在返回后继续执行。
+ * 4.后台组件异常不会导致崩溃，依赖它的组件会被跳过，在报告中标记。主线程组件的异常直接抛出。
+ * 5.全部完成后在后台线程回调{@link StartupReport}。
+ * </p>
+ */
+public final class StartupRunner {
+
+    public interface OnCompleteListener {
+        void onComplete(StartupReport report);
+    }
+
+    private final Context context;
+    private final StartupGraph graph;
+    @Nullable
+    private final OnCompleteListener listener;
+    private final ThreadPoolExecutor executor;
+    private final LinkedBlockingQueue<StartupGraph.Node> mainQueue = new LinkedBlockingQueue<>();
+    private final AtomicInteger remaining;
+    private long beginTime;
+    /**
+     * 主线程等待依赖的时间，只在主线程修改
+     */
+    private volatile long mainBlockedTime;
+
+    /**
+     * 执行启动组件，需要在主线程调用
+     *
+     * @param context    ~
+     * @param components ~
+     * @param listener   全部完成后在后台线程回调
+     */
+    public static void run(@NonNull Context context, @NonNull List<StartupComponent> components, @Nullable OnCompleteListener listener) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            throw new IllegalStateException("需要在主线程调用");
+        }
+        new StartupRunner(context.getApplicationContext(), StartupGraph.build(components), listener).run();
+    }
+
+    private StartupRunner(Context context, StartupGraph graph, @Nullable OnCompleteListener listener) {
+        this.context = context;
+        this.graph = graph;
+        this.listener = listener;
+        this.remaining = new AtomicInteger(graph.nodes.size());
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        final AtomicInteger index = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "Startup-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    private void run() {
+        beginTime = SystemClock.uptimeMillis();
+        int mainCount = 0;
+        for (StartupGraph.Node node : graph.nodes) {
+            if (node.component.runOnMainThread()) {
+                mainCount++;
+            }
+        }
+        if (graph.nodes.isEmpty()) {
+            executor.execute(this::finish);
+            return;
+        }
+        for (StartupGraph.Node node : graph.nodes) {
+            if (node.dependencies.isEmpty()) {
+                dispatch(node);
+            }
+        }
+        for (int i = 0; i < mainCount; i++) {
+            StartupGraph.Node node;
+            long waitStart = SystemClock.uptimeMillis();
+            try {
+                node = mainQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            mainBlockedTime += SystemClock.uptimeMillis() - waitStart;
+            execute(node);
+        }
+    }
+
+    private void dispatch(final StartupGraph.Node node) {
+        node.readyTime = SystemClock.uptimeMillis();
+        if (node.component.runOnMainThread()) {
+            mainQueue.add(node);
+        } else {
+            executor.execute(() -> execute(node));
+        }
+    }
+
+    private void execute(StartupGraph.Node node) {
+        node.threadName = Thread.currentThread().getName();
+        node.startTime = SystemClock.uptimeMillis();
+        for (StartupGraph.Node dependency : node.dependencies) {
+            if (dependency.failed) {
+                node.skipped = true;
+                node.failed = true;
+                break;
+            }
+        }
+        if (!node.skipped) {
+            if (node.component.runOnMainThread()) {
+                node.component.create(context);
+            } else {
+                try {
+                    node.component.create(context);
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                    node.failed = true;
+                }
+            }
+        }
+        node.endTime = SystemClock.uptimeMillis();
+        for (StartupGraph.Node dependent : node.dependents) {
+            if (dependent.remaining.decrementAndGet() == 0) {
+                dispatch(dependent);
+            }
+        }
+        if (remaining.decrementAndGet() == 0) {
+            executor.execute(this::finish);
+        }
+    }
+
+    private void finish() {
+        StartupReport report = new StartupReport(graph.nodes, beginTime, mainBlockedTime);
+        if (listener != null) {
+            listener.onComplete(report);
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,117 @@
+package org.depp.devbase.ui;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.subjects.BehaviorSubject;
+
+/**
+ * 跨配置变化保留的Activity作用域
+ * <p>
+ * 1.由BaseApp按ID持有，ID保存在savedInstanceState中，旋转屏幕后重建的Activity拿到的是同一个作用域。
+ * 2.只有Activity真正销毁（不是因为配置变化）时才会{@link #clear()}，绑定到作用域的请求在旋转时不会被取消。
+ * 3.{@link #cache(String, Observable)}缓存请求结果，重建后的Activity订阅时直接收到之前的结果。
+ * 不要在作用域中持有Activity、View等会随配置变化重建的对象。
+ * </p>
+ */
+public class ActivityScope {
+
+    private final String id;
+    private final CompositeDisposable disposables = new CompositeDisposable();
+    private final BehaviorSubject<Boolean> clearedSubject = BehaviorSubject.createDefault(false);
+    private final ConcurrentHashMap<String, Observable<?>> cachedObservables = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> values = new ConcurrentHashMap<>();
+
+    public ActivityScope(@NonNull String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public boolean isCleared() {
+        return clearedSubject.getValue();
+    }
+
+    /**
+     * 绑定到作用域，作用域清除时结束，不受配置变化影响
+     */
+    public <T> ObservableTransformer<T, T> bindToScope() {
+        return upstream -> upstream.takeUntil(clearedSubject.filter(cleared -> cleared));
+    }
+
+    /**
+     * 缓存Observable的结果，同一个tag只会订阅一次source
+     * <p>
+     * source在第一次订阅时开始，之后即使订阅者（旧的Activity）取消订阅也会继续执行直到作用域清除，
+     * 后来的订阅者会收到全部已发送的数据。
+     * </p>
+     *
+     * @param tag    ~
+     * @param source ~
+     * @return 可重复订阅的Observable
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Observable<T> cache(@NonNull String tag, @NonNull Observable<T> source) {
+        Observable<?> cached = cachedObservables.get(tag);
+        if (cached == null) {
+            Observable<T> created = source
+                    .compose(this.<T>bindToScope())
+                    .replay()
+                    .autoConnect(1, disposables::add);
+            cached = cachedObservables.putIfAbsent(tag, created);
+            if (cached == null) {
+                cached = created;
+            }
+        }
+        return (Observable<T>) cached;
+    }
+
+    /**
+     * 移除缓存，下次{@link #cache(String, Observable)}重新请求
+     *
+     * @param tag ~
+     */
+    public void removeCache(@NonNull String tag) {
+        cachedObservables.remove(tag);
+    }
+
+    /**
+     * 保存跨配置变化的对象
+     *
+     * @param key   ~
+     * @param value null表示移除
+     */
+    public void put(@NonNull String key, @Nullable Object value) {
+        if (value == null) {
+            values.remove(key);
+        } else {
+            values.put(key, value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public <T> T get(@NonNull String key) {
+        return (T) values.get(key);
+    }
+
+    /**
+     * 结束所有绑定的请求并清空缓存，只应由BaseApp调用
+     */
+    public void clear() {
+        if (isCleared()) {
+            return;
+        }
+        clearedSubject.onNext(true);
+        disposables.dispose();
+        cachedObservables.clear();
+        values.clear();
+    }
+}
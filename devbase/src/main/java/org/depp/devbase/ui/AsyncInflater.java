@@ -0,0 +1,182 @@
+package org.depp.devbase.ui;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * 后台线程加载布局
+ * <p>
+ * 1.所有加载共用一个后台线程，按提交顺序执行，结果在主线程回调。
+ * 2.与support库的AsyncLayoutInflater一样，后台线程使用没有Factory的LayoutInflater，只生成parent的LayoutParams，不添加到parent。
+ * AppCompat的Factory2（AppCompatDelegate/AppCompatViewInflater）有可变状态，不能和主线程同时使用，
+ * 所以后台加载的布局不会替换为AppCompat控件（TextView不是AppCompatTextView，不支持app:srcCompat等），
+ * 依赖这些的布局请直接在布局中使用AppCompat控件，或不使用后台加载。
+ * 3.布局中有需要在主线程创建的View（例如WebView）时后台加载会失败，自动改为用传入的LayoutInflater在主线程加载。
+ * </p>
+ */
+public final class AsyncInflater {
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static volatile Handler workerHandler;
+
+    public interface Callback {
+
+        /**
+         * 在主线程回调
+         *
+         * @param view     加载的布局
+         * @param layoutId ~
+         */
+        void onInflated(@NonNull View view, @LayoutRes int layoutId);
+    }
+
+    private AsyncInflater() {
+    }
+
+    /**
+     * 在后台线程加载布局
+     *
+     * @param inflater ~
+     * @param layoutId ~
+     * @param parent   用于生成LayoutParams，不会添加到parent
+     * @param callback ~
+     * @return 用于取消回调
+     */
+    public static Request inflate(@NonNull LayoutInflater inflater, @LayoutRes int layoutId,
+                                  @Nullable ViewGroup parent, @NonNull Callback callback) {
+        Request request = new Request(inflater, layoutId, parent, callback);
+        getWorkerHandler().post(request);
+        return request;
+    }
+
+    /**
+     * 在加载线程执行，用于按顺序排在布局加载中，例如预加载
+     *
+     * @param runnable ~
+     */
+    static void execute(@NonNull Runnable runnable) {
+        getWorkerHandler().post(runnable);
+    }
+
+    private static Handler getWorkerHandler() {
+        if (workerHandler == null) {
+            synchronized (AsyncInflater.class) {
+                if (workerHandler == null) {
+                    HandlerThread thread = new HandlerThread("devbase-inflater", Process.THREAD_PRIORITY_DEFAULT);
+                    thread.start();
+                    workerHandler = new Handler(thread.getLooper());
+                }
+            }
+        }
+        return workerHandler;
+    }
+
+    /**
+     * 后台线程使用的LayoutInflater，没有Factory，和主线程的LayoutInflater不共享状态
+     *
+     * @param context ~
+     * @return ~
+     */
+    static LayoutInflater newBackgroundInflater(@NonNull Context context) {
+        return new BasicInflater(context);
+    }
+
+    /**
+     * 与AsyncLayoutInflater.BasicInflater相同，只处理系统控件的包名
+     */
+    private static final class BasicInflater extends LayoutInflater {
+
+        private static final String[] CLASS_PREFIXES = {
+                "android.widget.",
+                "android.webkit.",
+                "android.app."
+        };
+
+        BasicInflater(Context context) {
+            super(context);
+        }
+
+        @Override
+        public LayoutInflater cloneInContext(Context newContext) {
+            return new BasicInflater(newContext);
+        }
+
+        @Override
+        protected View onCreateView(String name, AttributeSet attrs) throws ClassNotFoundException {
+            for (String prefix : CLASS_PREFIXES) {
+                try {
+                    View view = createView(name, prefix, attrs);
+                    if (view != null) {
+                        return view;
+                    }
+                } catch (ClassNotFoundException e) {
+                    // 继续尝试下一个包名
+                }
+            }
+            return super.onCreateView(name, attrs);
+        }
+    }
+
+    public static final class Request implements Runnable {
+
+        /**
+         * 只在主线程使用
+         */
+        private final LayoutInflater inflater;
+        private final int layoutId;
+        private final ViewGroup parent;
+        private final Callback callback;
+        private volatile boolean cancelled;
+
+        Request(LayoutInflater inflater, int layoutId, ViewGroup parent, Callback callback) {
+            this.inflater = inflater;
+            this.layoutId = layoutId;
+            this.parent = parent;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            View view;
+            try {
+                view = newBackgroundInflater(inflater.getContext()).inflate(layoutId, parent, false);
+            } catch (RuntimeException e) {
+                // 需要在主线程创建的View，改为在主线程加载
+                e.printStackTrace();
+                view = null;
+            }
+            final View inflated = view;
+            mainHandler.post(() -> {
+                if (cancelled) {
+                    return;
+                }
+                View result = inflated != null ? inflated : inflater.inflate(layoutId, parent, false);
+                callback.onInflated(result, layoutId);
+            });
+        }
+
+        /**
+         * 取消后不会回调，已经开始的加载会继续执行完
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
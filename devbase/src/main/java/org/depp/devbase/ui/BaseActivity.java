@@ -2,16 +2,19 @@ package org.depp.devbase.ui;
 
 import android.app.Activity;
 import android.content.DialogInterface;
+import android.databinding.DataBindingUtil;
+import android.databinding.ViewDataBinding;
 import android.os.Bundle;
 import android.support.annotation.CallSuper;
 import android.support.annotation.CheckResult;
+import android.support.annotation.LayoutRes;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 import android.view.MotionEvent;
 import android.view.View;
-import android.view.ViewTreeObserver;
-import android.widget.EditText;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
 import android.widget.Toast;
 
 import com.trello.rxlifecycle2.LifecycleProvider;
@@ -21,14 +24,21 @@ import com.trello.rxlifecycle2.android.ActivityEvent;
 import com.trello.rxlifecycle2.android.RxLifecycleAndroid;
 
 import org.depp.devbase.BaseApp;
+import org.depp.devbase.bus.EventBus;
+import org.depp.devbase.metrics.ScreenMetrics;
+import org.depp.devbase.metrics.ScreenTracker;
 import org.depp.devbase.permission.AppSettingsDialog;
+import org.depp.devbase.permission.PermissionEngine;
+import org.depp.devbase.permission.PermissionResult;
 import org.depp.devbase.permission.PermissionUtils;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
 
 import io.reactivex.Observable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.subjects.BehaviorSubject;
 
 /**
@@ -41,21 +51,51 @@ public abstract class BaseActivity extends AppCompatActivity implements Lifecycl
     protected final String TAG = getClass().getSimpleName();
     protected final boolean DEBUG = true;
 
+    /**
+     * initView在{@link InitPipeline}中的任务名
+     */
+    public static final String TASK_INIT_VIEW = "initView";
+
+    private static final String KEY_ACTIVITY_SCOPE_ID = "devbase:activity_scope_id";
+    /**
+     * 与Activity保存View状态使用的Key一致
+     */
+    private static final String KEY_VIEW_HIERARCHY_STATE = "android:viewHierarchyState";
+
     protected Activity activity;
 
     protected BaseUI baseUI;
 
     private final BehaviorSubject<ActivityEvent> lifecycleSubject = BehaviorSubject.create();
 
+    private ActivityScope activityScope;
+
+    private InitPipeline initPipeline;
+
+    private KeyboardDismisser keyboardDismisser;
+
+    @Nullable
+    private ScreenTracker screenTracker;
+
+    @Nullable
+    private AsyncInflater.Request inflateRequest;
+
+    @Nullable
+    private ViewDataBinding contentBinding;
+
+    private boolean contentReady;
+
+    /**
+     * 后台加载布局时，系统恢复的View状态只作用在占位上，保存下来在布局添加后再恢复
+     */
+    @Nullable
+    private Bundle pendingHierarchyState;
+
     @Override
     public boolean dispatchTouchEvent(MotionEvent ev) {
         // 处理触摸EditText外部收起键盘
-        if (ev.getAction() == MotionEvent.ACTION_DOWN) {
-            // 获得当前得到焦点的View，一般情况下就是EditText（特殊情况就是轨迹求或者实体按键会移动焦点）
-            View v = getCurrentFocus();
-            if (isShouldHideInput(v, ev)) {
-                hideSoftKeyboard(v);
-            }
+        if (ev.getAction() == MotionEvent.ACTION_DOWN && keyboardDismisser != null) {
+            keyboardDismisser.onTouchDown(ev);
         }
         return super.dispatchTouchEvent(ev);
     }
@@ -64,20 +104,79 @@ public abstract class BaseActivity extends AppCompatActivity implements Lifecycl
     @CallSuper
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        if (ScreenMetrics.isEnabled()) {
+            screenTracker = ScreenTracker.track(this, lifecycleSubject);
+        }
         lifecycleSubject.onNext(ActivityEvent.CREATE);
         activity = this;
         ((BaseApp) getApplication()).addActivity(activity);
+        String scopeId = savedInstanceState == null ? null : savedInstanceState.getString(KEY_ACTIVITY_SCOPE_ID);
+        if (scopeId == null) {
+            scopeId = UUID.randomUUID().toString();
+        }
+        activityScope = ((BaseApp) getApplication()).obtainActivityScope(scopeId);
         baseUI = getCustomBaseUI();
-        findViewById(android.R.id.content).getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
+        keyboardDismisser = new KeyboardDismisser(getWindow().getDecorView());
+        keyboardDismisser.attach();
+        // initView在第一次布局后、首帧前执行，其他任务可按阶段延后
+        initPipeline = new InitPipeline();
+        initPipeline.add(InitPipeline.PHASE_CRITICAL, TASK_INIT_VIEW, this::initView);
+        onCreateInitTasks(initPipeline);
+        initPipeline.setOnCompleteListener(pipeline -> {
+            if (screenTracker != null) {
+                screenTracker.onInitComplete(pipeline);
+            }
+            onInitComplete(pipeline);
+        });
+        int asyncLayoutId = getAsyncLayoutId();
+        if (asyncLayoutId != 0) {
+            // 先显示占位，布局加载完成并添加后再执行initView
+            View placeholder = onCreatePlaceholder();
+            setContentView(placeholder != null ? placeholder : new FrameLayout(this));
+            if (savedInstanceState != null) {
+                pendingHierarchyState = savedInstanceState.getBundle(KEY_VIEW_HIERARCHY_STATE);
+            }
+            inflateContent(asyncLayoutId);
+        } else {
+            initPipeline.start(findViewById(android.R.id.content));
+        }
+    }
 
-            @Override
-            public void onGlobalLayout() {
-                initView();
-                findViewById(android.R.id.content).getViewTreeObserver().removeOnGlobalLayoutListener(this);
+    private void inflateContent(int layoutId) {
+        if (usePrewarmedLayout()) {
+            View pooled = ((BaseApp) getApplication()).getInflationPool().obtain(this, layoutId);
+            if (pooled != null) {
+                onContentInflated(pooled);
+                return;
             }
+        }
+        ViewGroup parent = findViewById(android.R.id.content);
+        inflateRequest = AsyncInflater.inflate(getLayoutInflater(), layoutId, parent, (view, id) -> {
+            inflateRequest = null;
+            onContentInflated(view);
         });
     }
 
+    private void onContentInflated(View view) {
+        setContentView(view);
+        contentBinding = DataBindingUtil.getBinding(view);
+        if (contentBinding == null && view.getTag() instanceof String) {
+            try {
+                contentBinding = DataBindingUtil.bind(view);
+            } catch (IllegalArgumentException e) {
+                // 不是DataBinding布局
+                contentBinding = null;
+            }
+        }
+        contentReady = true;
+        if (pendingHierarchyState != null) {
+            // 恢复EditText内容、选中状态、滚动位置等
+            getWindow().restoreHierarchyState(pendingHierarchyState);
+            pendingHierarchyState = null;
+        }
+        initPipeline.start(findViewById(android.R.id.content));
+    }
+
     @Override
     @CallSuper
     protected void onStart() {
@@ -106,11 +205,33 @@ public abstract class BaseActivity extends AppCompatActivity implements Lifecycl
         super.onStop();
     }
 
+    @Override
+    @CallSuper
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(KEY_ACTIVITY_SCOPE_ID, activityScope.getId());
+        if (pendingHierarchyState != null) {
+            // 布局还没添加，保留上一次的View状态而不是占位的
+            outState.putBundle(KEY_VIEW_HIERARCHY_STATE, pendingHierarchyState);
+        }
+    }
+
     @Override
     @CallSuper
     protected void onDestroy() {
         lifecycleSubject.onNext(ActivityEvent.DESTROY);
+        initPipeline.cancel();
+        if (inflateRequest != null) {
+            inflateRequest.cancel();
+            inflateRequest = null;
+        }
+        baseUI.release();
+        keyboardDismisser.detach();
         ((BaseApp) getApplication()).removeActivity(activity);
+        // 配置变化会马上重建，保留作用域
+        if (!isChangingConfigurations()) {
+            ((BaseApp) getApplication()).releaseActivityScope(activityScope.getId());
+        }
         super.onDestroy();
     }
 
@@ -135,6 +256,29 @@ public abstract class BaseActivity extends AppCompatActivity implements Lifecycl
         return RxLifecycleAndroid.bindActivity(lifecycleSubject);
     }
 
+    /**
+     * 跨配置变化保留的作用域，旋转屏幕后不会重新请求：
+     * {@code getActivityScope().cache("list", api.list()).compose(bindToLifecycle())}
+     */
+    public ActivityScope getActivityScope() {
+        return activityScope;
+    }
+
+    /**
+     * 订阅{@link EventBus}事件，在主线程回调，DESTROY时自动注销
+     * <p>
+     * PAUSE/STOP期间不回调，只保留最后一个事件，RESUME时回调一次；需要在后台也立即处理的事件使用{@link EventBus#subscribe(LifecycleProvider, Class, boolean, boolean, EventBus.Callback)}
+     * </p>
+     *
+     * @param type     事件类型
+     * @param sticky   是否立即收到最后一个sticky事件
+     * @param callback ~
+     * @return 用于提前取消订阅
+     */
+    public <T> Disposable subscribeEvent(@NonNull Class<T> type, boolean sticky, @NonNull EventBus.Callback<T> callback) {
+        return EventBus.getDefault().subscribe(this, type, sticky, callback);
+    }
+
     /**
      * 可自行重写BaseUI
      */
@@ -155,7 +299,7 @@ public abstract class BaseActivity extends AppCompatActivity implements Lifecycl
     }
 
     /**
-     * 显示Loading
+     * 显示Loading，已经显示时只更新内容
      *
      * @param msg Loading title
      */
@@ -170,24 +314,24 @@ public abstract class BaseActivity extends AppCompatActivity implements Lifecycl
         baseUI.dismissLoading();
     }
 
+    public void beginLoading(@NonNull String msg) {
+        beginLoading(msg, false, false, null);
+    }
+
     /**
-     * 根据EditText所在坐标和用户点击的坐标相对比，来判断是否隐藏键盘，因为当用户点击EditText时没必要隐藏
+     * 开始一个需要Loading的操作，按引用计数，需要对应调用一次{@link #endLoading()}
      *
-     * @param v     EditText
-     * @param event ~
-     *
-     * @return ~
+     * @param msg Loading title
      */
-    private boolean isShouldHideInput(View v, MotionEvent event) {
-        if (v != null && (v instanceof EditText)) {
-            int[] l = {0, 0};
-            v.getLocationInWindow(l);
-            int left = l[0], top = l[1], bottom = top + v.getHeight(), right = left + v.getWidth();
-            // 如果点击是EditText的时间， 忽略掉
-            return !(event.getX() > left) || !(event.getX() < right) || !(event.getY() > top) || !(event.getY() < bottom);
-        }
-        // 如果焦点不是EditText则忽略，这个发生在视图刚绘制完，第一个焦点不在EditView上，和用户用轨迹球选择其他的焦点
-        return false;
+    public void beginLoading(@NonNull String msg, boolean cancelTouchOutside, boolean cancelable, @Nullable DialogInterface.OnCancelListener cancelListener) {
+        baseUI.beginLoading(msg, cancelTouchOutside, cancelable, cancelListener);
+    }
+
+    /**
+     * 结束一个{@link #beginLoading}开始的操作，全部结束后关闭Loading
+     */
+    public void endLoading() {
+        baseUI.endLoading();
     }
 
     /**
@@ -199,6 +343,19 @@ public abstract class BaseActivity extends AppCompatActivity implements Lifecycl
         baseUI.showSoftKeyboard(view);
     }
 
+    /**
+     * 点击这个View时不收起键盘，例如输入框旁边的发送按钮
+     *
+     * @param view ~
+     */
+    public void addKeyboardExclusionView(View view) {
+        keyboardDismisser.addExclusionView(view);
+    }
+
+    public void removeKeyboardExclusionView(View view) {
+        keyboardDismisser.removeExclusionView(view);
+    }
+
     /**
      * 隐藏键盘
      *
@@ -217,17 +374,105 @@ public abstract class BaseActivity extends AppCompatActivity implements Lifecycl
 
     protected abstract void initView();
 
+    /**
+     * 返回布局ID时在后台线程加载布局，加载期间显示占位，
+     * 添加后再执行initView；此时子类不要再调用setContentView，DataBinding布局通过{@link #getContentBinding()}获取。
+     * 旋转屏幕或进程重建时，系统保存的View状态在布局添加后、initView之前恢复，View需要有ID。
+     * 后台加载不使用AppCompat的控件替换，见{@link AsyncInflater}
+     *
+     * @return 0表示不使用，由子类自行setContentView
+     */
+    @LayoutRes
+    protected int getAsyncLayoutId() {
+        return 0;
+    }
+
+    /**
+     * 是否优先使用{@link BaseApp#prewarmLayout(int, int)}预加载的布局，默认false
+     * <p>
+     * 预加载的布局使用Application的主题，也没有AppCompat的控件替换（TextView不是AppCompatTextView），
+     * 只有确认布局不依赖Activity主题和AppCompat控件的页面才返回true。
+     * </p>
+     */
+    protected boolean usePrewarmedLayout() {
+        return false;
+    }
+
+    /**
+     * 后台加载布局期间显示的占位，需要简单的布局
+     *
+     * @return null时显示空白
+     */
+    @Nullable
+    protected View onCreatePlaceholder() {
+        return null;
+    }
+
+    /**
+     * 后台加载的DataBinding布局，在initView及之后可用
+     *
+     * @return 不是DataBinding布局或没有使用后台加载时为null
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <B extends ViewDataBinding> B getContentBinding() {
+        return (B) contentBinding;
+    }
+
+    /**
+     * 后台加载的布局是否已经添加，没有使用后台加载时总是true
+     */
+    public boolean isContentReady() {
+        return contentReady || getAsyncLayoutId() == 0;
+    }
+
+    /**
+     * 添加分阶段初始化任务，initView已作为关键任务添加：
+     * 首屏不需要的设置用{@link InitPipeline#PHASE_DEFERRED}，读取磁盘等用{@link InitPipeline#PHASE_BACKGROUND}
+     *
+     * @param pipeline ~
+     */
+    protected void onCreateInitTasks(InitPipeline pipeline) {
+
+    }
+
+    /**
+     * 所有初始化任务完成，可通过pipeline获取首帧时间、可交互时间和每个任务的耗时
+     *
+     * @param pipeline ~
+     */
+    protected void onInitComplete(InitPipeline pipeline) {
+
+    }
+
+    public InitPipeline getInitPipeline() {
+        return initPipeline;
+    }
+
+    /**
+     * 请求权限，同时发起的请求（包括Fragment中的）合并成一个系统对话框
+     * <p>
+     * 订阅时才在主线程的下一次消息循环中添加权限请求的Fragment，不会在FragmentManager执行事务期间提交。
+     * </p>
+     *
+     * @param perms ~
+     * @return 每个权限一个结果
+     */
+    public Observable<PermissionResult> askPermissions(String... perms) {
+        return Observable.defer(() -> PermissionEngine.get(this).request(perms))
+                .subscribeOn(AndroidSchedulers.mainThread());
+    }
+
     /**
      * 询问是否需要到系统设置自行打开不允许而且不再询问的权限
+     * <p>
+     * 直接检查权限状态，不添加权限请求的Fragment，可以在onActivityResult和Fragment生命周期中调用。
+     * </p>
      *
      * @param perms ~
      */
     public void askPermanentlyDeniedPermission(String... perms) {
-        String[] notGrantPermList = PermissionUtils.checkPermissions(activity, perms);
-        final List<String> permanentlyDeniedPermList = new ArrayList<>();
-        if (notGrantPermList != null) {
-            permanentlyDeniedPermList.addAll(Arrays.asList(notGrantPermList));
-        }
+        final List<String> permanentlyDeniedPermList = Arrays.asList(PermissionUtils.checkPermissions(this, perms));
         if (permanentlyDeniedPermList.size() > 0) {
             List<String> needGrantPermissionGroupName = PermissionUtils.loadPermissionsGroupName(getApplicationContext(), permanentlyDeniedPermList);
             if (needGrantPermissionGroupName != null && !needGrantPermissionGroupName.isEmpty()) {
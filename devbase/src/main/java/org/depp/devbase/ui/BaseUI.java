@@ -3,6 +3,9 @@ package org.depp.devbase.ui;
 import android.app.Activity;
 import android.content.Context;
 import android.content.DialogInterface;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.view.View;
@@ -11,18 +14,88 @@ import android.widget.Toast;
 
 import com.afollestad.materialdialogs.MaterialDialog;
 
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Activity的通用界面操作
+ * <p>
+ * 1.Toast和Loading可在任意线程调用，非主线程时post到主线程。
+ * 2.Toast复用同一个实例，相同内容在显示期间或已在队列中时会被忽略，两次显示至少间隔{@link #DEFAULT_TOAST_INTERVAL_MS}，队列最多保留{@link #MAX_QUEUED_TOASTS}条。
+ * 3.showLoading/dismissLoading与之前一致，显示期间再次showLoading只更新内容，一次dismissLoading即关闭；
+ * 多个并行操作共用对话框时使用{@link #beginLoading}/{@link #endLoading()}，按引用计数，全部结束才关闭。
+ * 在{@link #DEFAULT_LOADING_SHOW_DELAY_MS}内结束的操作不会显示对话框，显示后至少保持{@link #DEFAULT_LOADING_MIN_DISPLAY_MS}，避免闪烁。
+ * </p>
+ */
 public class BaseUI {
 
+    public static final long DEFAULT_TOAST_INTERVAL_MS = 1000;
+    public static final int MAX_QUEUED_TOASTS = 3;
+    public static final long DEFAULT_LOADING_SHOW_DELAY_MS = 300;
+    public static final long DEFAULT_LOADING_MIN_DISPLAY_MS = 500;
+
+    private static final long SHORT_DURATION_MS = 2000;
+    private static final long LONG_DURATION_MS = 3500;
+
     protected Activity activity;
 
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
     private Toast toast;
+    private final ConcurrentLinkedQueue<ToastRequest> incomingToasts = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Runnable drainToastsRunnable = this::drainToasts;
+    private final Runnable showNextToastRunnable = this::showNextToast;
+    /**
+     * 以下只在主线程访问
+     */
+    private final ArrayDeque<ToastRequest> toastQueue = new ArrayDeque<>();
+    private String lastToastMsg;
+    private long lastToastTime;
+    private long lastToastUntil;
+    private long toastIntervalMs = DEFAULT_TOAST_INTERVAL_MS;
+
     private MaterialDialog loadingDialog;
+    private InputMethodManager inputMethodManager;
+    private final Runnable showLoadingRunnable = this::showLoadingDialog;
+    private final Runnable dismissLoadingRunnable = this::dismissLoadingDialog;
+    /**
+     * 以下只在主线程访问
+     */
+    private int loadingCount;
+    /**
+     * showLoading未计数的Loading
+     */
+    private boolean loadingRequested;
+    private long loadingShownAt;
+    private String loadingMsg;
+    private boolean loadingCancelTouchOutside;
+    private boolean loadingCancelable;
+    private DialogInterface.OnCancelListener loadingCancelListener;
+    private long loadingShowDelayMs = DEFAULT_LOADING_SHOW_DELAY_MS;
+    private long loadingMinDisplayMs = DEFAULT_LOADING_MIN_DISPLAY_MS;
 
     public BaseUI(Activity activity) {
         this.activity = activity;
     }
 
+    /**
+     * 两次Toast的最小间隔
+     */
+    public void setToastInterval(long toastIntervalMs) {
+        this.toastIntervalMs = toastIntervalMs;
+    }
+
+    /**
+     * @param showDelayMs  showLoading后多久才显示对话框，0立即显示
+     * @param minDisplayMs 对话框显示后至少保持的时间
+     */
+    public void setLoadingDelays(long showDelayMs, long minDisplayMs) {
+        this.loadingShowDelayMs = showDelayMs;
+        this.loadingMinDisplayMs = minDisplayMs;
+    }
+
     /**
      * 显示Toast
      *
@@ -30,51 +103,237 @@ public class BaseUI {
      * @param duration {@link Toast#LENGTH_SHORT}, {@link Toast#LENGTH_LONG}
      */
     public void showToast(String msg, int duration) {
-        if (toast != null) {
-            toast.cancel();
+        incomingToasts.add(new ToastRequest(msg, duration));
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            drainToasts();
+        } else if (drainScheduled.compareAndSet(false, true)) {
+            // 多个后台线程的Toast只post一次
+            mainHandler.post(drainToastsRunnable);
+        }
+    }
+
+    private void drainToasts() {
+        drainScheduled.set(false);
+        long now = SystemClock.uptimeMillis();
+        ToastRequest request;
+        while ((request = incomingToasts.poll()) != null) {
+            if (isDuplicateToast(request.msg, now)) {
+                continue;
+            }
+            if (toastQueue.size() >= MAX_QUEUED_TOASTS) {
+                toastQueue.poll();
+            }
+            toastQueue.add(request);
+        }
+        mainHandler.removeCallbacks(showNextToastRunnable);
+        showNextToast();
+    }
+
+    private boolean isDuplicateToast(String msg, long now) {
+        if (msg == null) {
+            return false;
+        }
+        if (msg.equals(lastToastMsg) && now < lastToastUntil) {
+            return true;
+        }
+        for (ToastRequest queued : toastQueue) {
+            if (msg.equals(queued.msg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void showNextToast() {
+        if (toastQueue.isEmpty() || activity.isFinishing()) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        long wait = lastToastTime + toastIntervalMs - now;
+        if (wait > 0) {
+            mainHandler.postDelayed(showNextToastRunnable, wait);
+            return;
+        }
+        ToastRequest request = toastQueue.poll();
+        if (toast == null) {
+            toast = Toast.makeText(activity.getApplicationContext(), request.msg, request.duration);
+        } else {
+            toast.setText(request.msg);
+            toast.setDuration(request.duration);
         }
-        toast = Toast.makeText(activity, msg, duration);
         toast.show();
+        lastToastMsg = request.msg;
+        lastToastTime = now;
+        lastToastUntil = now + (request.duration == Toast.LENGTH_LONG ? LONG_DURATION_MS : SHORT_DURATION_MS);
+        if (!toastQueue.isEmpty()) {
+            mainHandler.postDelayed(showNextToastRunnable, toastIntervalMs);
+        }
     }
 
     /**
-     * 显示Loading
+     * 显示Loading，已经显示时只更新内容
      *
      * @param msg Loading title
      */
     public void showLoading(@NonNull String msg, boolean cancelTouchOutside, boolean cancelable, @Nullable DialogInterface.OnCancelListener cancelListener) {
+        runOnMainThread(() -> requestLoading(msg, cancelTouchOutside, cancelable, cancelListener, false));
+    }
+
+    /**
+     * 取消{@link #showLoading}显示的Loading，还有未结束的{@link #beginLoading}时保持显示
+     */
+    public void dismissLoading() {
+        runOnMainThread(() -> {
+            loadingRequested = false;
+            finishLoadingIfIdle();
+        });
+    }
+
+    /**
+     * 开始一个需要Loading的操作，需要对应调用一次{@link #endLoading()}
+     *
+     * @param msg Loading title
+     */
+    public void beginLoading(@NonNull String msg, boolean cancelTouchOutside, boolean cancelable, @Nullable DialogInterface.OnCancelListener cancelListener) {
+        runOnMainThread(() -> requestLoading(msg, cancelTouchOutside, cancelable, cancelListener, true));
+    }
+
+    /**
+     * 结束一个{@link #beginLoading}开始的操作，所有操作都结束后才会关闭
+     */
+    public void endLoading() {
+        runOnMainThread(() -> {
+            if (loadingCount == 0) {
+                return;
+            }
+            loadingCount--;
+            finishLoadingIfIdle();
+        });
+    }
+
+    private boolean isLoadingActive() {
+        return loadingRequested || loadingCount > 0;
+    }
+
+    private void requestLoading(String msg, boolean cancelTouchOutside, boolean cancelable, DialogInterface.OnCancelListener cancelListener, boolean counted) {
+        boolean wasActive = isLoadingActive();
+        loadingMsg = msg;
+        loadingCancelTouchOutside = cancelTouchOutside;
+        loadingCancelable = cancelable;
+        loadingCancelListener = cancelListener;
+        if (counted) {
+            loadingCount++;
+        } else {
+            loadingRequested = true;
+        }
+        mainHandler.removeCallbacks(dismissLoadingRunnable);
+        if (loadingDialog != null && loadingDialog.isShowing()) {
+            applyLoadingParams();
+        } else if (!wasActive) {
+            mainHandler.removeCallbacks(showLoadingRunnable);
+            if (loadingShowDelayMs > 0) {
+                mainHandler.postDelayed(showLoadingRunnable, loadingShowDelayMs);
+            } else {
+                showLoadingDialog();
+            }
+        }
+    }
+
+    private void finishLoadingIfIdle() {
+        if (isLoadingActive()) {
+            return;
+        }
+        // 还没显示就结束，不再显示
+        mainHandler.removeCallbacks(showLoadingRunnable);
+        if (loadingDialog != null && loadingDialog.isShowing()) {
+            long remaining = loadingShownAt + loadingMinDisplayMs - SystemClock.uptimeMillis();
+            if (remaining > 0) {
+                mainHandler.postDelayed(dismissLoadingRunnable, remaining);
+            } else {
+                dismissLoadingDialog();
+            }
+        }
+    }
+
+    /**
+     * 立即关闭Loading并清空计数，Activity销毁时调用
+     */
+    public void release() {
+        runOnMainThread(() -> {
+            mainHandler.removeCallbacks(showLoadingRunnable);
+            mainHandler.removeCallbacks(showNextToastRunnable);
+            toastQueue.clear();
+            incomingToasts.clear();
+            loadingCount = 0;
+            loadingRequested = false;
+            dismissLoadingDialog();
+        });
+    }
+
+    private void showLoadingDialog() {
+        if (!isLoadingActive() || activity.isFinishing()) {
+            return;
+        }
         if (loadingDialog == null) {
             loadingDialog = new MaterialDialog.Builder(activity)
                     .progress(true, 0)
                     .build();
         }
-        loadingDialog.setContent(msg);
-        loadingDialog.setCanceledOnTouchOutside(cancelTouchOutside);
-        loadingDialog.setCancelable(cancelable);
-        if (cancelable && cancelListener != null) {
-            loadingDialog.setOnCancelListener(cancelListener);
+        applyLoadingParams();
+        loadingDialog.show();
+        loadingShownAt = SystemClock.uptimeMillis();
+    }
+
+    private void applyLoadingParams() {
+        loadingDialog.setContent(loadingMsg);
+        loadingDialog.setCanceledOnTouchOutside(loadingCancelTouchOutside);
+        loadingDialog.setCancelable(loadingCancelable);
+        if (loadingCancelable && loadingCancelListener != null) {
+            final DialogInterface.OnCancelListener cancelListener = loadingCancelListener;
+            loadingDialog.setOnCancelListener(dialog -> {
+                // 用户取消时所有Loading都结束
+                loadingCount = 0;
+                loadingRequested = false;
+                mainHandler.removeCallbacks(dismissLoadingRunnable);
+                cancelListener.onCancel(dialog);
+            });
         } else {
-            loadingDialog.setOnCancelListener(null);
+            loadingDialog.setOnCancelListener(dialog -> {
+                loadingCount = 0;
+                loadingRequested = false;
+            });
         }
-        loadingDialog.show();
     }
 
-    /**
-     * 取消Loading对话框
-     */
-    public void dismissLoading() {
-        if (loadingDialog != null) {
+    private void dismissLoadingDialog() {
+        mainHandler.removeCallbacks(dismissLoadingRunnable);
+        if (loadingDialog != null && loadingDialog.isShowing()) {
             loadingDialog.dismiss();
         }
     }
 
+    private InputMethodManager getInputMethodManager() {
+        if (inputMethodManager == null) {
+            inputMethodManager = (InputMethodManager) activity.getSystemService(Context.INPUT_METHOD_SERVICE);
+        }
+        return inputMethodManager;
+    }
+
+    private void runOnMainThread(Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            mainHandler.post(runnable);
+        }
+    }
+
     /**
      * 弹出键盘
      *
      * @param view 通常是EditText
      */
     public void showSoftKeyboard(View view) {
-        InputMethodManager imm = (InputMethodManager) activity.getSystemService(Context.INPUT_METHOD_SERVICE);
+        InputMethodManager imm = getInputMethodManager();
         if (view != null && imm != null) {
             imm.showSoftInput(view, InputMethodManager.SHOW_IMPLICIT);
         }
@@ -86,7 +345,7 @@ public class BaseUI {
      * @param view 通常是EditText
      */
     public void hideSoftKeyboard(View view) {
-        InputMethodManager imm = (InputMethodManager) activity.getSystemService(Context.INPUT_METHOD_SERVICE);
+        InputMethodManager imm = getInputMethodManager();
         if (view != null && imm != null) {
             imm.hideSoftInputFromWindow(view.getWindowToken(), InputMethodManager.HIDE_NOT_ALWAYS);
         }
@@ -98,4 +357,15 @@ public class BaseUI {
     public void onNetworkUnavaliable() {
         showToast("没有网络", Toast.LENGTH_LONG);
     }
+
+    private static final class ToastRequest {
+
+        final String msg;
+        final int duration;
+
+        ToastRequest(String msg, int duration) {
+            this.msg = msg;
+            this.duration = duration;
+        }
+    }
 }
@@ -0,0 +1,117 @@
+package org.depp.devbase.ui;
+
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
+import android.view.View;
+
+import java.util.ArrayDeque;
+
+/**
+ * 预加载的布局
+ * <p>
+ * 1.在{@link AsyncInflater}的线程中用Application加载，使用Application的主题；取出时把View的Context切换为Activity。
+ * 2.没有Activity的LayoutInflater，AppCompat不会替换控件（例如TextView不是AppCompatTextView），依赖这些的布局不要预加载，
+ * BaseActivity需要通过{@link BaseActivity#usePrewarmedLayout()}逐个页面开启。
+ * 3.每个布局最多保留{@link #DEFAULT_MAX_PER_LAYOUT}个，内存不足时{@link #clear()}。
+ * </p>
+ */
+public class InflationPool {
+
+    public static final int DEFAULT_MAX_PER_LAYOUT = 2;
+
+    private final Context appContext;
+    private final SparseArray<ArrayDeque<View>> pool = new SparseArray<>();
+    private final SparseArray<Integer> pendingCounts = new SparseArray<>();
+    private int maxPerLayout = DEFAULT_MAX_PER_LAYOUT;
+
+    public InflationPool(@NonNull Context context) {
+        this.appContext = context.getApplicationContext();
+    }
+
+    public synchronized InflationPool setMaxPerLayout(int maxPerLayout) {
+        this.maxPerLayout = maxPerLayout;
+        return this;
+    }
+
+    /**
+     * 在后台预加载布局，例如下一个可能打开的页面
+     *
+     * @param layoutId ~
+     * @param count    需要保留的数量，已有的也计算在内
+     */
+    public void prewarm(@LayoutRes final int layoutId, int count) {
+        int toInflate;
+        synchronized (this) {
+            ArrayDeque<View> views = pool.get(layoutId);
+            int existing = (views == null ? 0 : views.size()) + pendingCounts.get(layoutId, 0);
+            toInflate = Math.min(count, maxPerLayout) - existing;
+            if (toInflate <= 0) {
+                return;
+            }
+            pendingCounts.put(layoutId, pendingCounts.get(layoutId, 0) + toInflate);
+        }
+        for (int i = 0; i < toInflate; i++) {
+            AsyncInflater.execute(() -> inflateInto(layoutId));
+        }
+    }
+
+    private void inflateInto(int layoutId) {
+        View view;
+        try {
+            MutableContextWrapper context = new MutableContextWrapper(appContext);
+            view = AsyncInflater.newBackgroundInflater(context).inflate(layoutId, null, false);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            view = null;
+        }
+        synchronized (this) {
+            int pending = pendingCounts.get(layoutId, 0);
+            if (pending <= 0) {
+                // 已经clear
+                return;
+            }
+            pendingCounts.put(layoutId, pending - 1);
+            if (view == null) {
+                return;
+            }
+            ArrayDeque<View> views = pool.get(layoutId);
+            if (views == null) {
+                views = new ArrayDeque<>();
+                pool.put(layoutId, views);
+            }
+            views.add(view);
+        }
+    }
+
+    /**
+     * 取出预加载的布局，需要在主线程调用
+     *
+     * @param context  通常是Activity
+     * @param layoutId ~
+     * @return 没有时为null
+     */
+    @Nullable
+    public View obtain(@NonNull Context context, @LayoutRes int layoutId) {
+        View view;
+        synchronized (this) {
+            ArrayDeque<View> views = pool.get(layoutId);
+            view = views == null ? null : views.poll();
+        }
+        if (view != null && view.getContext() instanceof MutableContextWrapper) {
+            ((MutableContextWrapper) view.getContext()).setBaseContext(context);
+        }
+        return view;
+    }
+
+    /**
+     * 清空所有预加载的布局，正在加载的也会丢弃
+     */
+    public synchronized void clear() {
+        pool.clear();
+        pendingCounts.clear();
+    }
+}
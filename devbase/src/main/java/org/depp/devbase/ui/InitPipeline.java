@@ -0,0 +1,283 @@
+package org.depp.devbase.ui;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分阶段的界面初始化
+ * <p>
+ * 1.{@link #PHASE_CRITICAL}：第一次布局完成、第一帧绘制之前在主线程执行，只放首屏必需的设置。
+ * 2.{@link #PHASE_DEFERRED}：第一帧之后在主线程空闲时逐个执行，不会和首帧争抢时间。
+ * 3.{@link #PHASE_BACKGROUND}：{@link #start(View)}时就在后台线程执行，不能操作View。
+ * 4.记录每个阶段和每个任务的耗时，首帧时间、可交互时间（延迟任务全部完成）都从创建时开始计算。
+ * </p>
+ */
+public class InitPipeline {
+
+    public static final int PHASE_CRITICAL = 0;
+    public static final int PHASE_DEFERRED = 1;
+    public static final int PHASE_BACKGROUND = 2;
+
+    private static volatile ExecutorService backgroundExecutor;
+
+    private final long createTime = SystemClock.uptimeMillis();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Task> criticalTasks = new ArrayList<>();
+    private final ArrayDeque<Task> deferredTasks = new ArrayDeque<>();
+    private final List<Task> backgroundTasks = new ArrayList<>();
+    private final Map<String, Long> taskTimes = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final AtomicInteger pendingBackground = new AtomicInteger();
+
+    private boolean started;
+    private boolean completed;
+    private volatile boolean cancelled;
+    private long firstLayoutTime = -1;
+    private long criticalTime = -1;
+    private long firstFrameTime = -1;
+    private long interactiveTime = -1;
+    private volatile long backgroundTime = -1;
+    @Nullable
+    private OnCompleteListener onCompleteListener;
+
+    private final MessageQueue.IdleHandler deferredIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            if (cancelled) {
+                return false;
+            }
+            Task task = deferredTasks.poll();
+            if (task != null) {
+                run(task);
+            }
+            if (deferredTasks.isEmpty()) {
+                interactiveTime = SystemClock.uptimeMillis() - createTime;
+                checkComplete();
+                return false;
+            }
+            return true;
+        }
+    };
+
+    /**
+     * 全部完成（包括后台任务）后回调，在主线程
+     */
+    public interface OnCompleteListener {
+        void onComplete(InitPipeline pipeline);
+    }
+
+    /**
+     * 添加任务，需要在{@link #start(View)}之前调用
+     *
+     * @param phase {@link #PHASE_CRITICAL}、{@link #PHASE_DEFERRED}、{@link #PHASE_BACKGROUND}
+     * @param name  用于记录耗时
+     * @param task  ~
+     * @return ~
+     */
+    public InitPipeline add(int phase, @NonNull String name, @NonNull Runnable task) {
+        if (started) {
+            throw new IllegalStateException("InitPipeline 已经开始");
+        }
+        Task item = new Task(name, task);
+        switch (phase) {
+            case PHASE_CRITICAL:
+                criticalTasks.add(item);
+                break;
+            case PHASE_DEFERRED:
+                deferredTasks.add(item);
+                break;
+            case PHASE_BACKGROUND:
+                backgroundTasks.add(item);
+                break;
+            default:
+                throw new IllegalArgumentException("未知的阶段 " + phase);
+        }
+        return this;
+    }
+
+    public InitPipeline setOnCompleteListener(@Nullable OnCompleteListener onCompleteListener) {
+        this.onCompleteListener = onCompleteListener;
+        return this;
+    }
+
+    /**
+     * 开始执行，需要在主线程调用
+     *
+     * @param content 等待第一次布局的View，通常是android.R.id.content
+     */
+    public void start(@NonNull final View content) {
+        if (started) {
+            return;
+        }
+        started = true;
+        startBackground();
+        content.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
+
+            @Override
+            public void onGlobalLayout() {
+                content.getViewTreeObserver().removeOnGlobalLayoutListener(this);
+                if (cancelled) {
+                    return;
+                }
+                firstLayoutTime = SystemClock.uptimeMillis() - createTime;
+                for (Task task : criticalTasks) {
+                    run(task);
+                }
+                criticalTime = SystemClock.uptimeMillis() - createTime;
+                // 当前正在第一帧的遍历中，下一帧回调时第一帧已经绘制
+                Choreographer.getInstance().postFrameCallback(frameTimeNanos -> onFirstFrame());
+            }
+        });
+    }
+
+    /**
+     * 取消还没执行的任务，Activity销毁时调用
+     */
+    public void cancel() {
+        cancelled = true;
+        Looper.myQueue().removeIdleHandler(deferredIdleHandler);
+        deferredTasks.clear();
+    }
+
+    private void onFirstFrame() {
+        if (cancelled) {
+            return;
+        }
+        firstFrameTime = SystemClock.uptimeMillis() - createTime;
+        if (deferredTasks.isEmpty()) {
+            interactiveTime = firstFrameTime;
+            checkComplete();
+        } else {
+            Looper.myQueue().addIdleHandler(deferredIdleHandler);
+        }
+    }
+
+    private void startBackground() {
+        if (backgroundTasks.isEmpty()) {
+            backgroundTime = 0;
+            return;
+        }
+        pendingBackground.set(backgroundTasks.size());
+        ExecutorService executor = getBackgroundExecutor();
+        for (final Task task : backgroundTasks) {
+            executor.execute(() -> {
+                if (!cancelled) {
+                    try {
+                        run(task);
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+                if (pendingBackground.decrementAndGet() == 0) {
+                    backgroundTime = SystemClock.uptimeMillis() - createTime;
+                    mainHandler.post(this::checkComplete);
+                }
+            });
+        }
+    }
+
+    private void run(Task task) {
+        long start = SystemClock.uptimeMillis();
+        task.runnable.run();
+        taskTimes.put(task.name, SystemClock.uptimeMillis() - start);
+    }
+
+    private void checkComplete() {
+        if (cancelled || completed || interactiveTime < 0 || backgroundTime < 0) {
+            return;
+        }
+        // 空闲任务和后台任务都可能最后完成，只回调一次
+        completed = true;
+        if (onCompleteListener != null) {
+            onCompleteListener.onComplete(this);
+        }
+    }
+
+    private static ExecutorService getBackgroundExecutor() {
+        if (backgroundExecutor == null) {
+            synchronized (InitPipeline.class) {
+                if (backgroundExecutor == null) {
+                    final AtomicInteger index = new AtomicInteger();
+                    backgroundExecutor = Executors.newFixedThreadPool(2, runnable -> {
+                        Thread thread = new Thread(runnable, "InitPipeline-" + index.incrementAndGet());
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.NORM_PRIORITY - 1);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return backgroundExecutor;
+    }
+
+    /**
+     * 第一次布局完成的时间（毫秒，从创建开始），-1表示还没完成
+     */
+    public long getFirstLayoutTime() {
+        return firstLayoutTime;
+    }
+
+    /**
+     * 关键任务完成的时间（毫秒，从创建开始），-1表示还没完成
+     */
+    public long getCriticalTime() {
+        return criticalTime;
+    }
+
+    /**
+     * 首帧时间
+     */
+    public long getFirstFrameTime() {
+        return firstFrameTime;
+    }
+
+    /**
+     * 可交互时间，延迟任务全部完成
+     */
+    public long getInteractiveTime() {
+        return interactiveTime;
+    }
+
+    /**
+     * 后台任务全部完成的时间
+     */
+    public long getBackgroundTime() {
+        return backgroundTime;
+    }
+
+    /**
+     * 每个任务的耗时（毫秒），按完成顺序
+     */
+    public Map<String, Long> getTaskTimes() {
+        synchronized (taskTimes) {
+            return new LinkedHashMap<>(taskTimes);
+        }
+    }
+
+    private static final class Task {
+
+        final String name;
+        final Runnable runnable;
+
+        Task(String name, Runnable runnable) {
+            this.name = name;
+            this.runnable = runnable;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.depp.devbase.ui;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.view.inputmethod.InputMethodManager;
+import android.widget.EditText;
+
+import java.util.ArrayList;
+
+/**
+ * 点击EditText外部收起键盘
+ * <p>
+ * 1.焦点View通过焦点变化监听缓存，位置缓存在复用的Rect中，只在布局、滚动、焦点变化后重新计算。
+ * 2.InputMethodManager只获取一次。键盘可能由系统或其他方式弹出，点击外部时总是调用hideSoftInputFromWindow，键盘没有显示时它不做任何事。
+ * 3.{@link #onTouchDown(MotionEvent)}不分配对象，点击排除区域（例如发送按钮）时不收起键盘。
+ * 需要在主线程使用。
+ * </p>
+ */
+public class KeyboardDismisser {
+
+    private final View root;
+    private final InputMethodManager imm;
+    private final int[] location = new int[2];
+    private final Rect focusedRect = new Rect();
+    private final ArrayList<View> exclusionViews = new ArrayList<>();
+    private final ArrayList<Rect> exclusionRects = new ArrayList<>();
+
+    private View focusedView;
+    private boolean boundsValid;
+    private boolean attached;
+
+    private final ViewTreeObserver.OnGlobalFocusChangeListener focusChangeListener = (oldFocus, newFocus) -> {
+        focusedView = newFocus;
+        boundsValid = false;
+    };
+    private final ViewTreeObserver.OnGlobalLayoutListener layoutListener = () -> boundsValid = false;
+    private final ViewTreeObserver.OnScrollChangedListener scrollListener = () -> boundsValid = false;
+
+    /**
+     * @param root 通常是DecorView，触摸坐标需要相对于它所在的Window
+     */
+    public KeyboardDismisser(@NonNull View root) {
+        this.root = root;
+        this.imm = (InputMethodManager) root.getContext().getSystemService(Context.INPUT_METHOD_SERVICE);
+    }
+
+    /**
+     * 开始监听焦点和布局变化
+     */
+    public void attach() {
+        if (attached) {
+            return;
+        }
+        attached = true;
+        ViewTreeObserver observer = root.getViewTreeObserver();
+        observer.addOnGlobalFocusChangeListener(focusChangeListener);
+        observer.addOnGlobalLayoutListener(layoutListener);
+        observer.addOnScrollChangedListener(scrollListener);
+        focusedView = root.findFocus();
+        boundsValid = false;
+    }
+
+    public void detach() {
+        if (!attached) {
+            return;
+        }
+        attached = false;
+        ViewTreeObserver observer = root.getViewTreeObserver();
+        observer.removeOnGlobalFocusChangeListener(focusChangeListener);
+        observer.removeOnGlobalLayoutListener(layoutListener);
+        observer.removeOnScrollChangedListener(scrollListener);
+        focusedView = null;
+        exclusionViews.clear();
+        exclusionRects.clear();
+    }
+
+    /**
+     * 点击这个View时不收起键盘
+     *
+     * @param view ~
+     */
+    public void addExclusionView(@NonNull View view) {
+        if (!exclusionViews.contains(view)) {
+            exclusionViews.add(view);
+            exclusionRects.add(new Rect());
+            boundsValid = false;
+        }
+    }
+
+    public void removeExclusionView(@NonNull View view) {
+        int index = exclusionViews.indexOf(view);
+        if (index >= 0) {
+            exclusionViews.remove(index);
+            exclusionRects.remove(index);
+        }
+    }
+
+    /**
+     * 处理ACTION_DOWN
+     *
+     * @param event 相对Window的坐标
+     * @return 是否收起了键盘
+     */
+    public boolean onTouchDown(@NonNull MotionEvent event) {
+        View focused = focusedView;
+        if (!(focused instanceof EditText)) {
+            // 焦点不是EditText则忽略，这个发生在视图刚绘制完，第一个焦点不在EditText上，和用户用轨迹球选择其他的焦点
+            return false;
+        }
+        if (!boundsValid) {
+            updateBounds(focused);
+        }
+        int x = (int) event.getX();
+        int y = (int) event.getY();
+        if (focusedRect.contains(x, y)) {
+            return false;
+        }
+        for (int i = 0, size = exclusionRects.size(); i < size; i++) {
+            if (exclusionRects.get(i).contains(x, y)) {
+                return false;
+            }
+        }
+        if (imm == null) {
+            return false;
+        }
+        imm.hideSoftInputFromWindow(focused.getWindowToken(), InputMethodManager.HIDE_NOT_ALWAYS);
+        return true;
+    }
+
+    private void updateBounds(View focused) {
+        getBounds(focused, focusedRect);
+        for (int i = 0, size = exclusionViews.size(); i < size; i++) {
+            View view = exclusionViews.get(i);
+            if (view.isShown()) {
+                getBounds(view, exclusionRects.get(i));
+            } else {
+                exclusionRects.get(i).setEmpty();
+            }
+        }
+        boundsValid = true;
+    }
+
+    private void getBounds(View view, Rect outRect) {
+        view.getLocationInWindow(location);
+        outRect.set(location[0], location[1], location[0] + view.getWidth(), location[1] + view.getHeight());
+    }
+}
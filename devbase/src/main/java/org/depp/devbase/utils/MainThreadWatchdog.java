@@ -0,0 +1,210 @@
+package org.depp.devbase.utils;
+
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 主线程阻塞检测
+ * <p>
+ * 1.只检测devbase中会读写磁盘或调用Binder的接口：PrefUtil同步写入、flush，PermissionUtils读取权限组名称等。
+ * 2.在主线程调用且耗时超过阈值时，记录调用位置（devbase之外的第一帧）的次数和耗时，并输出一次调用栈。
+ * 3.默认关闭，关闭时每次调用只读取一个volatile字段。
+ * </p>
+ */
+public final class MainThreadWatchdog {
+
+    private static final String TAG = "MainThreadWatchdog";
+    private static final String DEVBASE_PACKAGE = "org.depp.devbase.";
+
+    public static final long DEFAULT_THRESHOLD_MS = 5;
+
+    private static volatile boolean enabled;
+    private static volatile long thresholdNanos;
+    @Nullable
+    private static volatile Listener listener;
+    private static final ConcurrentHashMap<String, Site> sites = new ConcurrentHashMap<>();
+
+    /**
+     * 自定义上报，例如发送到服务器
+     */
+    public interface Listener {
+        /**
+         * @param site   调用位置的统计
+         * @param costMs 本次耗时
+         * @param stack  本次调用栈
+         */
+        void onViolation(Site site, long costMs, Throwable stack);
+    }
+
+    private MainThreadWatchdog() {
+    }
+
+    /**
+     * 开启检测
+     *
+     * @param thresholdMs 主线程调用超过这个时间才记录
+     */
+    public static void enable(long thresholdMs) {
+        thresholdNanos = thresholdMs * 1000000;
+        enabled = true;
+    }
+
+    public static void enable() {
+        enable(DEFAULT_THRESHOLD_MS);
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 设置上报，null只输出日志
+     */
+    public static void setListener(@Nullable Listener listener) {
+        MainThreadWatchdog.listener = listener;
+    }
+
+    /**
+     * 开始计时，需与{@link #end(String, long)}成对调用
+     *
+     * @return 0表示不需要检测
+     */
+    public static long begin() {
+        if (!enabled || Looper.myLooper() != Looper.getMainLooper()) {
+            return 0;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * 结束计时
+     *
+     * @param api   被检测的接口，例如PrefUtil.setConfigParams
+     * @param token {@link #begin()}的返回值
+     */
+    public static void end(@NonNull String api, long token) {
+        if (token == 0) {
+            return;
+        }
+        long cost = System.nanoTime() - token;
+        if (cost < thresholdNanos) {
+            return;
+        }
+        Throwable stack = new Throwable(api + " 在主线程耗时 " + cost / 1000000 + "ms");
+        String key = api + " @ " + findCallSite(stack.getStackTrace());
+        Site site = sites.get(key);
+        if (site == null) {
+            Site created = new Site(key);
+            site = sites.putIfAbsent(key, created);
+            if (site == null) {
+                site = created;
+            }
+        }
+        long count = site.record(cost);
+        // 同一个位置只输出第一次的调用栈，之后只更新次数
+        if (count == 1) {
+            Log.w(TAG, stack.getMessage(), stack);
+        }
+        Listener current = listener;
+        if (current != null) {
+            current.onViolation(site, cost / 1000000, stack);
+        }
+    }
+
+    /**
+     * 所有调用位置的统计，按总耗时排序
+     */
+    public static List<Site> getSites() {
+        List<Site> list = new ArrayList<>(sites.values());
+        Collections.sort(list, (left, right) -> Long.compare(right.getTotalMs(), left.getTotalMs()));
+        return list;
+    }
+
+    /**
+     * 输出统计到日志
+     */
+    public static void dump() {
+        for (Site site : getSites()) {
+            Log.w(TAG, site.toString());
+        }
+    }
+
+    public static void reset() {
+        sites.clear();
+    }
+
+    private static String findCallSite(StackTraceElement[] elements) {
+        for (StackTraceElement element : elements) {
+            if (!element.getClassName().startsWith(DEVBASE_PACKAGE)) {
+                return element.toString();
+            }
+        }
+        // 只在devbase内部调用，取检测点之外的第一帧
+        for (StackTraceElement element : elements) {
+            if (!element.getClassName().equals(MainThreadWatchdog.class.getName())) {
+                return element.toString();
+            }
+        }
+        return "unknown";
+    }
+
+    /**
+     * 一个调用位置的统计
+     */
+    public static final class Site {
+
+        private final String name;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        Site(String name) {
+            this.name = name;
+        }
+
+        long record(long nanos) {
+            totalNanos.addAndGet(nanos);
+            long current;
+            while (nanos > (current = maxNanos.get()) && !maxNanos.compareAndSet(current, nanos)) {
+                // 重试
+            }
+            return count.incrementAndGet();
+        }
+
+        /**
+         * 接口 @ 调用位置
+         */
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getTotalMs() {
+            return totalNanos.get() / 1000000;
+        }
+
+        public long getMaxMs() {
+            return maxNanos.get() / 1000000;
+        }
+
+        @Override
+        public String toString() {
+            return name + " count=" + getCount() + " total=" + getTotalMs() + "ms max=" + getMaxMs() + "ms";
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.depp.devbase.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于内存映射文件的PrefUtil存储
+ * <p>
+ * 适合key很多、写入频繁的文件，每次写入只追加一条记录。
+ * 第一次打开时会把同名SharedPreferences中的数据迁移过来并清空原文件。
+ * 迁移后原文件是空的，之后映射失败不会再退回SharedPreferences，而是重试一次，仍失败则只读加载，保证读到的数据不丢。
+ * </p>
+ */
+public class MappedPrefStorage implements PrefStorage {
+
+    private static final String DIR_NAME = "mapped_prefs";
+    private static final String FILE_SUFFIX = ".mmp";
+
+    private final ConcurrentHashMap<String, SharedPreferences> opened = new ConcurrentHashMap<>();
+
+    @Override
+    public SharedPreferences open(Context context, String preferenceName) {
+        SharedPreferences preferences = opened.get(preferenceName);
+        if (preferences != null) {
+            return preferences;
+        }
+        synchronized (this) {
+            preferences = opened.get(preferenceName);
+            if (preferences == null) {
+                preferences = openLocked(context, preferenceName);
+                opened.put(preferenceName, preferences);
+            }
+            return preferences;
+        }
+    }
+
+    private SharedPreferences openLocked(Context context, String preferenceName) {
+        File dir = new File(context.getFilesDir(), DIR_NAME);
+        File file = new File(dir, preferenceName + FILE_SUFFIX);
+        SharedPreferences legacy = context.getSharedPreferences(preferenceName, Context.MODE_PRIVATE);
+        try {
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            if (file.exists()) {
+                return openMigrated(file);
+            }
+            // 迁移完成后文件才会出现，中途被杀下次会重新迁移
+            Map<String, ?> legacyValues = legacy.getAll();
+            MappedPreferences preferences = new MappedPreferences(file, legacyValues);
+            if (!legacyValues.isEmpty()) {
+                legacy.edit().clear().commit();
+            }
+            return preferences;
+        } catch (IOException e) {
+            e.printStackTrace();
+            // 迁移没有完成，数据还在SharedPreferences中
+            return legacy;
+        }
+    }
+
+    /**
+     * 打开已经迁移过的文件，不会退回SharedPreferences
+     */
+    private static SharedPreferences openMigrated(File file) {
+        for (int i = 0; i < 2; i++) {
+            try {
+                return new MappedPreferences(file, null);
+            } catch (IOException e) {
+                // 可能是暂时的失败（例如文件描述符不足），重试一次
+                e.printStackTrace();
+            }
+        }
+        // 这次运行中的修改不会保存
+        return MappedPreferences.readOnly(file);
+    }
+}
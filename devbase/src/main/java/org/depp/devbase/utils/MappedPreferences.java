@@ -0,0 +1,634 @@
+package org.depp.devbase.utils;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射文件的SharedPreferences
+ * <p>
+ * 文件是一个只追加的记录日志，每次写入只追加修改的记录而不是重写整个文件，
+ * 每条记录带CRC32校验，加载时遇到不完整或校验失败的记录即停止，进程中途被杀不会损坏之前的数据。
+ * 文件写满时把当前所有值写入新文件再替换（压缩），必要时扩容。
+ * </p>
+ * <p>
+ * 文件格式：header[magic(4) version(4)] + record[length(4) crc32(4) payload(length)]...
+ * </p>
+ */
+public class MappedPreferences implements SharedPreferences {
+
+    private static final int MAGIC = 0x44424D50;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MIN_CAPACITY = 16 * 1024;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_CLEAR = 3;
+
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_FLOAT = 4;
+    private static final byte TYPE_BOOLEAN = 5;
+    private static final byte TYPE_STRING_SET = 6;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Object REMOVED = new Object();
+    private static final Object PRESENT = new Object();
+
+    private final File file;
+    private final ConcurrentHashMap<String, Object> values = new ConcurrentHashMap<>();
+    private final WeakHashMap<OnSharedPreferenceChangeListener, Object> listeners = new WeakHashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // 以下字段由this保护
+    private final CRC32 crc = new CRC32();
+    private RandomAccessFile randomAccessFile;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+
+    /**
+     * @param file          数据文件
+     * @param initialValues 文件不存在时写入的初始值（用于迁移），文件已存在时忽略
+     * @throws IOException 无法创建或映射文件
+     */
+    public MappedPreferences(File file, @Nullable Map<String, ?> initialValues) throws IOException {
+        this.file = file;
+        synchronized (this) {
+            if (!file.exists() || file.length() < HEADER_SIZE) {
+                if (initialValues != null) {
+                    for (Map.Entry<String, ?> entry : initialValues.entrySet()) {
+                        if (entry.getKey() != null && entry.getValue() != null) {
+                            values.put(entry.getKey(), copyValue(entry.getValue()));
+                        }
+                    }
+                }
+                compact(0);
+            } else {
+                load();
+            }
+        }
+    }
+
+    /**
+     * 只读打开，不映射文件，用于已有文件无法映射时保留数据
+     * <p>
+     * 修改只会失败（commit返回false），无法读取时为空。
+     * </p>
+     *
+     * @param file 数据文件
+     */
+    static MappedPreferences readOnly(File file) {
+        MappedPreferences preferences = new MappedPreferences(file);
+        synchronized (preferences) {
+            try {
+                preferences.loadReadOnly();
+            } catch (IOException e) {
+                e.printStackTrace();
+                preferences.values.clear();
+            }
+        }
+        return preferences;
+    }
+
+    private MappedPreferences(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        Map<String, Object> all = new HashMap<>(values);
+        for (Map.Entry<String, Object> entry : all.entrySet()) {
+            if (entry.getValue() instanceof Set) {
+                entry.setValue(copyValue(entry.getValue()));
+            }
+        }
+        return all;
+    }
+
+    @Nullable
+    @Override
+    public String getString(String key, @Nullable String defValue) {
+        Object value = values.get(key);
+        return value != null ? (String) value : defValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    @Override
+    public Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
+        Object value = values.get(key);
+        return value != null ? (Set<String>) copyValue(value) : defValues;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        Object value = values.get(key);
+        return value != null ? (Integer) value : defValue;
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        Object value = values.get(key);
+        return value != null ? (Long) value : defValue;
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        Object value = values.get(key);
+        return value != null ? (Float) value : defValue;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        Object value = values.get(key);
+        return value != null ? (Boolean) value : defValue;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    @Override
+    public Editor edit() {
+        return new MappedEditor();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        synchronized (listeners) {
+            listeners.put(listener, PRESENT);
+        }
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        synchronized (listeners) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * 写入修改并追加记录
+     * <p>
+     * 先编码所有记录，空间足够时先追加记录再修改内存；需要压缩时先修改内存再压缩，压缩失败时恢复内存，保证内存和文件一致。
+     * </p>
+     *
+     * @return 修改过的key，null表示clear
+     */
+    private synchronized List<String> write(Map<String, Object> changes, boolean clear, boolean sync) throws IOException {
+        if (buffer == null) {
+            throw new IOException("Read-only " + file);
+        }
+        List<String> changedKeys = new ArrayList<>(changes.size() + 1);
+        List<byte[]> records = new ArrayList<>(changes.size() + 1);
+        Map<String, Object> applied = new HashMap<>();
+        boolean clearing = clear && !values.isEmpty();
+        Map<String, Object> base = clearing ? Collections.<String, Object>emptyMap() : values;
+        if (clearing) {
+            records.add(encode(OP_CLEAR, "", null));
+            changedKeys.add(null);
+        }
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            String key = change.getKey();
+            Object value = change.getValue();
+            if (value == REMOVED) {
+                if (base.containsKey(key)) {
+                    records.add(encode(OP_REMOVE, key, null));
+                    applied.put(key, REMOVED);
+                    changedKeys.add(key);
+                }
+            } else if (!value.equals(base.get(key))) {
+                records.add(encode(OP_PUT, key, value));
+                applied.put(key, value);
+                changedKeys.add(key);
+            }
+        }
+        if (records.isEmpty()) {
+            return changedKeys;
+        }
+        int size = 0;
+        for (byte[] payload : records) {
+            size += RECORD_HEADER_SIZE + payload.length;
+        }
+        if (writePosition + size <= buffer.capacity()) {
+            for (byte[] payload : records) {
+                append(payload);
+            }
+            applyToMemory(clearing, applied);
+        } else {
+            // 压缩写入的是values的当前值，已经包含这次修改
+            Map<String, Object> snapshot = new HashMap<>(values);
+            applyToMemory(clearing, applied);
+            try {
+                compact(size);
+            } catch (IOException | RuntimeException e) {
+                values.clear();
+                values.putAll(snapshot);
+                throw e;
+            }
+        }
+        if (sync) {
+            buffer.force();
+        }
+        return changedKeys;
+    }
+
+    private void applyToMemory(boolean clear, Map<String, Object> applied) {
+        if (clear) {
+            values.clear();
+        }
+        for (Map.Entry<String, Object> change : applied.entrySet()) {
+            if (change.getValue() == REMOVED) {
+                values.remove(change.getKey());
+            } else {
+                values.put(change.getKey(), change.getValue());
+            }
+        }
+    }
+
+    /**
+     * 追加一条记录，调用前需要确认空间足够
+     */
+    private void append(byte[] payload) {
+        int size = RECORD_HEADER_SIZE + payload.length;
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        buffer.position(writePosition + RECORD_HEADER_SIZE);
+        buffer.put(payload);
+        buffer.putInt(writePosition + 4, (int) crc.getValue());
+        // 最后写入长度，长度为0的位置视为日志结尾
+        buffer.putInt(writePosition, payload.length);
+        writePosition += size;
+    }
+
+    /**
+     * 把当前所有值写入临时文件后替换原文件
+     *
+     * @param reserve 压缩后至少需要保留的空间
+     */
+    private void compact(int reserve) throws IOException {
+        List<byte[]> records = new ArrayList<>(values.size());
+        int liveSize = HEADER_SIZE;
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            byte[] payload = encode(OP_PUT, entry.getKey(), entry.getValue());
+            records.add(payload);
+            liveSize += RECORD_HEADER_SIZE + payload.length;
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < (liveSize + reserve) * 2) {
+            capacity <<= 1;
+        }
+
+        ByteBuffer content = ByteBuffer.allocate(liveSize);
+        content.putInt(MAGIC);
+        content.putInt(FORMAT_VERSION);
+        for (byte[] payload : records) {
+            crc.reset();
+            crc.update(payload, 0, payload.length);
+            content.putInt(payload.length);
+            content.putInt((int) crc.getValue());
+            content.put(payload);
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try {
+            out.setLength(0);
+            out.write(content.array(), 0, liveSize);
+            out.setLength(capacity);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        closeMapping();
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            // 继续使用原文件
+            if (file.exists()) {
+                openMapping();
+            }
+            throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+        openMapping();
+        writePosition = liveSize;
+    }
+
+    private void load() throws IOException {
+        openMapping();
+        if (!isValidHeader(buffer)) {
+            // 无法识别的文件，备份后重新创建
+            closeMapping();
+            File corrupted = new File(file.getPath() + ".corrupted");
+            if (!file.renameTo(corrupted)) {
+                throw new IOException("Cannot move aside " + file);
+            }
+            compact(0);
+            return;
+        }
+        int capacity = buffer.capacity();
+        int position = replayLog(buffer);
+        writePosition = position;
+        // 上次写入中途被杀，清掉不完整的记录
+        if (position + 4 <= capacity && buffer.getInt(position) != 0) {
+            for (int i = position; i < capacity; i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    private void loadReadOnly() throws IOException {
+        byte[] content;
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            content = new byte[(int) in.length()];
+            in.readFully(content);
+        } finally {
+            in.close();
+        }
+        ByteBuffer log = ByteBuffer.wrap(content);
+        if (!isValidHeader(log)) {
+            throw new IOException("Unrecognized " + file);
+        }
+        replayLog(log);
+    }
+
+    private static boolean isValidHeader(ByteBuffer log) {
+        return log.capacity() >= HEADER_SIZE && log.getInt(0) == MAGIC && log.getInt(4) == FORMAT_VERSION;
+    }
+
+    /**
+     * 按顺序重放记录，遇到不完整或校验失败的记录即停止
+     *
+     * @return 最后一条有效记录之后的位置
+     */
+    private int replayLog(ByteBuffer log) throws IOException {
+        int capacity = log.capacity();
+        int position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= capacity) {
+            int length = log.getInt(position);
+            if (length <= 0 || length > capacity - position - RECORD_HEADER_SIZE) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            log.position(position + RECORD_HEADER_SIZE);
+            log.get(payload);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != log.getInt(position + 4)) {
+                break;
+            }
+            replay(payload);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private void replay(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        String key = readString(in);
+        if (op == OP_CLEAR) {
+            values.clear();
+        } else if (op == OP_REMOVE) {
+            values.remove(key);
+        } else if (op == OP_PUT) {
+            values.put(key, readValue(in));
+        }
+    }
+
+    private void openMapping() throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        FileChannel channel = randomAccessFile.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+    }
+
+    private void closeMapping() throws IOException {
+        if (randomAccessFile != null) {
+            // MappedByteBuffer无法主动unmap，关闭文件后由GC回收映射
+            randomAccessFile.close();
+            randomAccessFile = null;
+            buffer = null;
+        }
+    }
+
+    private static byte[] encode(byte op, String key, Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(op);
+        writeString(out, key);
+        if (op == OP_PUT) {
+            writeValue(out, value);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Set) {
+            Set<String> set = (Set<String>) value;
+            out.writeByte(TYPE_STRING_SET);
+            out.writeInt(set.size());
+            for (String item : set) {
+                writeString(out, item);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported preference value: " + value);
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_STRING:
+                return readString(in);
+            case TYPE_INT:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_FLOAT:
+                return in.readFloat();
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_STRING_SET:
+                int size = in.readInt();
+                Set<String> set = new HashSet<>(size);
+                for (int i = 0; i < size; i++) {
+                    set.add(readString(in));
+                }
+                return Collections.unmodifiableSet(set);
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyValue(Object value) {
+        if (value instanceof Set) {
+            return Collections.unmodifiableSet(new HashSet<>((Set<String>) value));
+        }
+        return value;
+    }
+
+    private void notifyListeners(final List<String> changedKeys) {
+        if (changedKeys.isEmpty()) {
+            return;
+        }
+        final List<OnSharedPreferenceChangeListener> targets;
+        synchronized (listeners) {
+            if (listeners.isEmpty()) {
+                return;
+            }
+            targets = new ArrayList<>(listeners.keySet());
+        }
+        // 与系统实现一致，在主线程回调
+        Runnable notify = () -> {
+            for (int i = changedKeys.size() - 1; i >= 0; i--) {
+                for (OnSharedPreferenceChangeListener listener : targets) {
+                    listener.onSharedPreferenceChanged(MappedPreferences.this, changedKeys.get(i));
+                }
+            }
+        };
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            notify.run();
+        } else {
+            mainHandler.post(notify);
+        }
+    }
+
+    private final class MappedEditor implements Editor {
+
+        private final Map<String, Object> changes = new HashMap<>();
+        private boolean clear;
+
+        @Override
+        public Editor putString(String key, @Nullable String value) {
+            changes.put(key, value == null ? REMOVED : value);
+            return this;
+        }
+
+        @Override
+        public Editor putStringSet(String key, @Nullable Set<String> values) {
+            changes.put(key, values == null ? REMOVED : copyValue(values));
+            return this;
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor remove(String key) {
+            changes.put(key, REMOVED);
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            clear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            return write(true);
+        }
+
+        /**
+         * 写入内存映射不需要后台线程，apply只是不强制同步到磁盘
+         */
+        @Override
+        public void apply() {
+            write(false);
+        }
+
+        private boolean write(boolean sync) {
+            List<String> changedKeys;
+            try {
+                changedKeys = MappedPreferences.this.write(changes, clear, sync);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            } finally {
+                changes.clear();
+                clear = false;
+            }
+            notifyListeners(changedKeys);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package org.depp.devbase.utils;
+
+import android.content.SharedPreferences;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PrefUtil读取缓存
+ * <p>
+ * 每个preference文件对应一个{@link Snapshot}，后台线程预热，命中时只是一次无锁的Map查找，
+ * int/long/float/boolean直接以基本类型保存，读取不会装箱。
+ * 外部通过Editor写入时由OnSharedPreferenceChangeListener使缓存失效。
+ * 多个文件在后台线程池并行加载，加载完成前未命中的读取会等待加载完成。
+ * </p>
+ */
+final class PrefCache {
+
+    /**
+     * 缓存未命中时读取还没写入磁盘的值
+     */
+    interface PendingSource {
+
+        Object peek(String preferenceName, String key);
+    }
+
+    private final ConcurrentHashMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final PendingSource pendingSource;
+    private final ThreadPoolExecutor loader;
+
+    PrefCache(PendingSource pendingSource) {
+        this.pendingSource = pendingSource;
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.loader = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "PrefUtil-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.loader.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 获取文件缓存，第一次获取时在后台预热
+     *
+     * @param preferenceName ~
+     * @param preferences    只有第一次获取时才会调用
+     */
+    Snapshot getSnapshot(String preferenceName, PreferencesProvider preferences) {
+        Snapshot snapshot = snapshots.get(preferenceName);
+        if (snapshot == null) {
+            Snapshot newSnapshot = new Snapshot(preferenceName, preferences.getPreference(preferenceName));
+            snapshot = snapshots.putIfAbsent(preferenceName, newSnapshot);
+            if (snapshot == null) {
+                snapshot = newSnapshot;
+                final Snapshot warming = newSnapshot;
+                loader.execute(warming::load);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 并行预加载
+     *
+     * @param preferenceNames ~
+     * @param preferences     ~
+     */
+    void preload(String[] preferenceNames, PreferencesProvider preferences) {
+        for (String preferenceName : preferenceNames) {
+            getSnapshot(preferenceName, preferences);
+        }
+    }
+
+    /**
+     * 输出每个文件的加载耗时和主线程等待时间
+     */
+    String getLoadTrace() {
+        StringBuilder trace = new StringBuilder();
+        long totalMainWaitNanos = 0;
+        for (Snapshot snapshot : snapshots.values()) {
+            long mainWaitNanos = snapshot.mainThreadWaitNanos.get();
+            totalMainWaitNanos += mainWaitNanos;
+            trace.append(snapshot.preferenceName)
+                    .append(": load ")
+                    .append(snapshot.loadTimeMs < 0 ? "pending" : snapshot.loadTimeMs + "ms")
+                    .append(", main thread waited ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(mainWaitNanos))
+                    .append("ms\n");
+        }
+        trace.append("total main thread waited ")
+                .append(TimeUnit.NANOSECONDS.toMillis(totalMainWaitNanos))
+                .append("ms");
+        return trace.toString();
+    }
+
+    long getHitCount() {
+        return hitCount.get();
+    }
+
+    long getMissCount() {
+        return missCount.get();
+    }
+
+    void resetStats() {
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+    interface PreferencesProvider {
+
+        SharedPreferences getPreference(String preferenceName);
+    }
+
+    final class Snapshot implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+        private final String preferenceName;
+        private final SharedPreferences preferences;
+        private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+        /**
+         * 每次失效加1，用来丢弃并发读取到的旧值
+         */
+        private final AtomicInteger version = new AtomicInteger();
+        private final CountDownLatch loaded = new CountDownLatch(1);
+        private final AtomicLong mainThreadWaitNanos = new AtomicLong();
+        private final long createTime = SystemClock.elapsedRealtime();
+        private volatile long loadTimeMs = -1;
+
+        Snapshot(String preferenceName, SharedPreferences preferences) {
+            this.preferenceName = preferenceName;
+            this.preferences = preferences;
+            // SharedPreferences只弱引用listener，Snapshot本身被缓存强引用
+            preferences.registerOnSharedPreferenceChangeListener(this);
+        }
+
+        void load() {
+            try {
+                int startVersion = version.get();
+                for (Map.Entry<String, ?> value : preferences.getAll().entrySet()) {
+                    entries.putIfAbsent(value.getKey(), Entry.of(value.getValue()));
+                }
+                if (version.get() != startVersion) {
+                    // 预热期间有外部写入，无法确定哪些值已经过期
+                    entries.clear();
+                }
+            } finally {
+                loadTimeMs = SystemClock.elapsedRealtime() - createTime;
+                loaded.countDown();
+            }
+        }
+
+        /**
+         * 还没加载完成时等待，主线程等待时间会被记录
+         */
+        private void awaitLoaded() {
+            if (loaded.getCount() == 0) {
+                return;
+            }
+            boolean isMainThread = Looper.myLooper() == Looper.getMainLooper();
+            long start = System.nanoTime();
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    loaded.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (isMainThread) {
+                mainThreadWaitNanos.addAndGet(System.nanoTime() - start);
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * PrefUtil写入后同步更新缓存
+         */
+        void put(String key, Object value) {
+            entries.put(key, Entry.of(value));
+        }
+
+        void remove(String key) {
+            entries.put(key, Entry.ABSENT);
+        }
+
+        boolean contains(String key) {
+            Entry entry = lookup(key);
+            return entry == null ? preferences.contains(key) : entry.type != Entry.TYPE_ABSENT;
+        }
+
+        long getLong(String key, long defValue) {
+            Entry entry = lookup(key);
+            if (entry == null) {
+                entry = fill(key, version.get(), preferences.contains(key) ? preferences.getLong(key, defValue) : null);
+            }
+            return entry.getLong(defValue);
+        }
+
+        int getInt(String key, int defValue) {
+            Entry entry = lookup(key);
+            if (entry == null) {
+                entry = fill(key, version.get(), preferences.contains(key) ? preferences.getInt(key, defValue) : null);
+            }
+            return entry.getInt(defValue);
+        }
+
+        float getFloat(String key, float defValue) {
+            Entry entry = lookup(key);
+            if (entry == null) {
+                entry = fill(key, version.get(), preferences.contains(key) ? preferences.getFloat(key, defValue) : null);
+            }
+            return entry.getFloat(defValue);
+        }
+
+        boolean getBoolean(String key, boolean defValue) {
+            Entry entry = lookup(key);
+            if (entry == null) {
+                entry = fill(key, version.get(), preferences.contains(key) ? preferences.getBoolean(key, defValue) : null);
+            }
+            return entry.getBoolean(defValue);
+        }
+
+        String getString(String key, String defValue) {
+            Entry entry = lookup(key);
+            if (entry == null) {
+                entry = fill(key, version.get(), preferences.getString(key, null));
+            }
+            return entry.getString(defValue);
+        }
+
+        /**
+         * 查找缓存，未命中时先查还没写入磁盘的值
+         *
+         * @return null 需要从SharedPreferences读取
+         */
+        private Entry lookup(String key) {
+            Entry entry = entries.get(key);
+            if (entry == null && loaded.getCount() != 0) {
+                awaitLoaded();
+                entry = entries.get(key);
+            }
+            if (entry != null) {
+                hitCount.incrementAndGet();
+                return entry;
+            }
+            missCount.incrementAndGet();
+            Object pending = pendingSource.peek(preferenceName, key);
+            if (pending != null) {
+                return pending == PrefWriteBehind.REMOVED ? Entry.ABSENT : Entry.of(pending);
+            }
+            return null;
+        }
+
+        /**
+         * 把从SharedPreferences读取到的值放入缓存
+         *
+         * @param startVersion 读取之前的版本，调用时必须写在value之前
+         */
+        private Entry fill(String key, int startVersion, Object value) {
+            Entry entry = Entry.of(value);
+            Entry cached = entries.putIfAbsent(key, entry);
+            if (cached != null) {
+                return cached;
+            }
+            if (version.get() != startVersion) {
+                // 读取期间被外部修改，不能缓存可能过期的值
+                entries.remove(key, entry);
+            }
+            return entry;
+        }
+
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            version.incrementAndGet();
+            if (key == null) {
+                // Android R之后clear()会回调null
+                entries.clear();
+            } else {
+                entries.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 缓存值，基本类型保存在primitive中避免装箱
+     */
+    static final class Entry {
+
+        static final int TYPE_ABSENT = 0;
+        static final int TYPE_LONG = 1;
+        static final int TYPE_INT = 2;
+        static final int TYPE_FLOAT = 3;
+        static final int TYPE_BOOLEAN = 4;
+        static final int TYPE_STRING = 5;
+        static final int TYPE_OTHER = 6;
+
+        static final Entry ABSENT = new Entry(TYPE_ABSENT, 0, null);
+        static final Entry TRUE = new Entry(TYPE_BOOLEAN, 1, null);
+        static final Entry FALSE = new Entry(TYPE_BOOLEAN, 0, null);
+
+        final int type;
+        final long primitive;
+        final Object reference;
+
+        private Entry(int type, long primitive, Object reference) {
+            this.type = type;
+            this.primitive = primitive;
+            this.reference = reference;
+        }
+
+        static Entry of(Object value) {
+            if (value == null) {
+                return ABSENT;
+            } else if (value instanceof Long) {
+                return new Entry(TYPE_LONG, (Long) value, null);
+            } else if (value instanceof Integer) {
+                return new Entry(TYPE_INT, (Integer) value, null);
+            } else if (value instanceof Float) {
+                return new Entry(TYPE_FLOAT, Float.floatToRawIntBits((Float) value), null);
+            } else if (value instanceof Boolean) {
+                return (Boolean) value ? TRUE : FALSE;
+            } else if (value instanceof String) {
+                return new Entry(TYPE_STRING, 0, value);
+            } else {
+                return new Entry(TYPE_OTHER, 0, value);
+            }
+        }
+
+        long getLong(long defValue) {
+            return type == TYPE_ABSENT ? defValue : (type == TYPE_LONG ? primitive : typeMismatch(Long.class));
+        }
+
+        int getInt(int defValue) {
+            return type == TYPE_ABSENT ? defValue : (type == TYPE_INT ? (int) primitive : typeMismatch(Integer.class));
+        }
+
+        float getFloat(float defValue) {
+            return type == TYPE_ABSENT ? defValue : (type == TYPE_FLOAT ? Float.intBitsToFloat((int) primitive) : typeMismatch(Float.class));
+        }
+
+        boolean getBoolean(boolean defValue) {
+            if (type == TYPE_ABSENT) {
+                return defValue;
+            }
+            if (type != TYPE_BOOLEAN) {
+                typeMismatch(Boolean.class);
+            }
+            return primitive != 0;
+        }
+
+        String getString(String defValue) {
+            if (type == TYPE_ABSENT) {
+                return defValue;
+            }
+            if (type != TYPE_STRING) {
+                typeMismatch(String.class);
+            }
+            return (String) reference;
+        }
+
+        /**
+         * 与SharedPreferences保持一致，类型不对时抛出ClassCastException
+         */
+        private int typeMismatch(Class<?> expected) {
+            throw new ClassCastException("Preference value of type " + type + " cannot be cast to " + expected.getName());
+        }
+    }
+}
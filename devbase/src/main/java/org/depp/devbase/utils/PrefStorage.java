@@ -0,0 +1,23 @@
+package org.depp.devbase.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * PrefUtil存储实现
+ * <p>
+ * 通过{@link PrefUtil#setStorage(PrefStorage, String...)}为指定的preference文件替换存储，
+ * 默认使用系统SharedPreferences。同一个文件多次open必须返回同一个实例。
+ * </p>
+ */
+public interface PrefStorage {
+
+    /**
+     * 打开preference文件
+     *
+     * @param context        Application
+     * @param preferenceName ~
+     * @return ~
+     */
+    SharedPreferences open(Context context, String preferenceName);
+}
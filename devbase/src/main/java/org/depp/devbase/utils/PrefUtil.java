@@ -4,18 +4,114 @@ import android.app.Application;
 import android.content.Context;
 import android.content.SharedPreferences;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * preference工具类
  * Created by Manfi
  */
 public class PrefUtil {
 
+    /**
+     * 延迟写入默认最长等待时间
+     */
+    public static final long DEFAULT_FLUSH_DELAY_MS = 200;
+
     private static Application app;
+    private static volatile PrefWriteBehind writeBehind;
+    private static final PrefCache cache = new PrefCache(PrefUtil::peekPending);
+    private static final ConcurrentHashMap<String, PrefStorage> storages = new ConcurrentHashMap<>();
 
     public static void init(Application app) {
         PrefUtil.app = app;
     }
 
+    /**
+     * 初始化并在后台线程并行预加载指定的preference文件
+     * <p>
+     * 之后第一次读取这些文件时只有还没加载完成才会等待。
+     * </p>
+     *
+     * @param app             ~
+     * @param preferenceNames 需要预加载的文件
+     */
+    public static void init(Application app, String... preferenceNames) {
+        init(app);
+        cache.preload(preferenceNames, PrefUtil::getPreference);
+    }
+
+    /**
+     * 获取预加载统计，每个文件的加载耗时以及主线程等待时间
+     *
+     * @return ~
+     */
+    public static String getLoadTrace() {
+        return cache.getLoadTrace();
+    }
+
+    /**
+     * 为指定的preference文件替换存储，例如{@link MappedPrefStorage}
+     * <p>
+     * 必须在第一次访问这些文件之前调用（BaseApp中在super.onCreate()之前）。
+     * </p>
+     *
+     * @param storage         ~
+     * @param preferenceNames ~
+     */
+    public static void setStorage(PrefStorage storage, String... preferenceNames) {
+        for (String preferenceName : preferenceNames) {
+            storages.put(preferenceName, storage);
+        }
+    }
+
+    /**
+     * 开启延迟批量写入
+     * <p>
+     * 开启后setConfigParams/removeKey只写入内存，同一文件的多次写入合并后在后台线程一次性写入磁盘，
+     * 读取会优先返回还未写入的值。
+     * </p>
+     *
+     * @param flushDelayMs 第一次写入到真正写入磁盘的最长等待时间
+     */
+    public static synchronized void enableWriteBehind(long flushDelayMs) {
+        if (writeBehind == null) {
+            writeBehind = new PrefWriteBehind(PrefUtil::openEditor, flushDelayMs);
+        }
+    }
+
+    /**
+     * 开启延迟批量写入，使用默认等待时间{@link #DEFAULT_FLUSH_DELAY_MS}
+     */
+    public static void enableWriteBehind() {
+        enableWriteBehind(DEFAULT_FLUSH_DELAY_MS);
+    }
+
+    /**
+     * 立即把某个文件还未写入的值写入磁盘，返回时已经写入完成
+     *
+     * @param preferenceName ~
+     */
+    public static void flush(String preferenceName) {
+        PrefWriteBehind writer = writeBehind;
+        if (writer != null) {
+            long token = MainThreadWatchdog.begin();
+            writer.flush(preferenceName);
+            MainThreadWatchdog.end("PrefUtil.flush", token);
+        }
+    }
+
+    /**
+     * 立即把所有还未写入的值写入磁盘，返回时已经写入完成
+     */
+    public static void flushAll() {
+        PrefWriteBehind writer = writeBehind;
+        if (writer != null) {
+            long token = MainThreadWatchdog.begin();
+            writer.flushAll();
+            MainThreadWatchdog.end("PrefUtil.flushAll", token);
+        }
+    }
+
     /**
      * 获取SharedPreferences
      *
@@ -25,26 +121,31 @@ public class PrefUtil {
     private static SharedPreferences getPreference(String preferenceName) {
         if (app == null) {
             throw new NullPointerException("请初始化 PrefUtil");
-        } else {
-            return app.getSharedPreferences(
-                    preferenceName, Context.MODE_PRIVATE);
         }
+        PrefStorage storage = storages.get(preferenceName);
+        if (storage != null) {
+            return storage.open(app, preferenceName);
+        }
+        return app.getSharedPreferences(
+                preferenceName, Context.MODE_PRIVATE);
     }
 
     /**
      * 获取SharedPreferences.Editor
+     * <p>
+     * 开启延迟批量写入时，会先把这个文件还未写入的值写入磁盘，避免之后的flush用旧值覆盖Editor写入的值。
+     * </p>
      *
      * @param preferenceName ~
      * @return ~
      */
     public static SharedPreferences.Editor getEditor(String preferenceName) {
-        if (app == null) {
-            throw new NullPointerException("请初始化 PrefUtil");
-        } else {
-            SharedPreferences preferences = app.getSharedPreferences(
-                    preferenceName, Context.MODE_PRIVATE);
-            return preferences.edit();
-        }
+        flush(preferenceName);
+        return openEditor(preferenceName);
+    }
+
+    private static SharedPreferences.Editor openEditor(String preferenceName) {
+        return getPreference(preferenceName).edit();
     }
 
     /**
@@ -55,7 +156,7 @@ public class PrefUtil {
      * @return ~
      */
     public static boolean isKeyAvailable(String preferenceName, String key) {
-        return getPreference(preferenceName).contains(key);
+        return getSnapshot(preferenceName).contains(key);
     }
 
     /**
@@ -66,9 +167,15 @@ public class PrefUtil {
      */
     public static void removeKey(String preferenceName, String key) {
         if (isKeyAvailable(preferenceName, key)) {
-            SharedPreferences.Editor editor = getEditor(preferenceName);
-            editor.remove(key);
-            editor.commit();
+            PrefWriteBehind writer = writeBehind;
+            if (writer != null) {
+                writer.put(preferenceName, key, PrefWriteBehind.REMOVED);
+            } else {
+                SharedPreferences.Editor editor = getEditor(preferenceName);
+                editor.remove(key);
+                commit(editor, "PrefUtil.removeKey");
+            }
+            getSnapshot(preferenceName).remove(key);
         }
     }
 
@@ -81,8 +188,7 @@ public class PrefUtil {
      * @return ~
      */
     public static long getConfigParams(String preferenceName, String key, long defValue) {
-        SharedPreferences preferences = getPreference(preferenceName);
-        return preferences.getLong(key, defValue);
+        return getSnapshot(preferenceName).getLong(key, defValue);
     }
 
     /**
@@ -93,9 +199,15 @@ public class PrefUtil {
      * @param value          ~
      */
     public static void setConfigParams(String preferenceName, String key, long value) {
-        SharedPreferences.Editor editor = getEditor(preferenceName);
-        editor.putLong(key, value);
-        editor.commit();
+        PrefWriteBehind writer = writeBehind;
+        if (writer != null) {
+            writer.put(preferenceName, key, value);
+        } else {
+            SharedPreferences.Editor editor = getEditor(preferenceName);
+            editor.putLong(key, value);
+            commit(editor, "PrefUtil.setConfigParams");
+        }
+        getSnapshot(preferenceName).put(key, value);
     }
 
     /**
@@ -106,9 +218,15 @@ public class PrefUtil {
      * @param value          ~
      */
     public static void setConfigParams(String preferenceName, String key, int value) {
-        SharedPreferences.Editor editor = getEditor(preferenceName);
-        editor.putInt(key, value);
-        editor.commit();
+        PrefWriteBehind writer = writeBehind;
+        if (writer != null) {
+            writer.put(preferenceName, key, value);
+        } else {
+            SharedPreferences.Editor editor = getEditor(preferenceName);
+            editor.putInt(key, value);
+            commit(editor, "PrefUtil.setConfigParams");
+        }
+        getSnapshot(preferenceName).put(key, value);
     }
 
     /**
@@ -120,8 +238,7 @@ public class PrefUtil {
      * @return ~
      */
     public static int getConfigParams(String preferenceName, String key, int defValue) {
-        SharedPreferences preferences = getPreference(preferenceName);
-        return preferences.getInt(key, defValue);
+        return getSnapshot(preferenceName).getInt(key, defValue);
     }
 
     /**
@@ -133,8 +250,7 @@ public class PrefUtil {
      * @return ~
      */
     public static float getConfigParams(String preferenceName, String key, float defValue) {
-        SharedPreferences preferences = getPreference(preferenceName);
-        return preferences.getFloat(key, defValue);
+        return getSnapshot(preferenceName).getFloat(key, defValue);
     }
 
     /**
@@ -145,9 +261,15 @@ public class PrefUtil {
      * @param value          ~
      */
     public static void setConfigParams(String preferenceName, String key, float value) {
-        SharedPreferences.Editor editor = getEditor(preferenceName);
-        editor.putFloat(key, value);
-        editor.commit();
+        PrefWriteBehind writer = writeBehind;
+        if (writer != null) {
+            writer.put(preferenceName, key, value);
+        } else {
+            SharedPreferences.Editor editor = getEditor(preferenceName);
+            editor.putFloat(key, value);
+            commit(editor, "PrefUtil.setConfigParams");
+        }
+        getSnapshot(preferenceName).put(key, value);
     }
 
     /**
@@ -158,9 +280,15 @@ public class PrefUtil {
      * @param value          ~
      */
     public static void setConfigParams(String preferenceName, String key, boolean value) {
-        SharedPreferences.Editor editor = getEditor(preferenceName);
-        editor.putBoolean(key, value);
-        editor.commit();
+        PrefWriteBehind writer = writeBehind;
+        if (writer != null) {
+            writer.put(preferenceName, key, value);
+        } else {
+            SharedPreferences.Editor editor = getEditor(preferenceName);
+            editor.putBoolean(key, value);
+            commit(editor, "PrefUtil.setConfigParams");
+        }
+        getSnapshot(preferenceName).put(key, value);
     }
 
     /**
@@ -172,8 +300,7 @@ public class PrefUtil {
      * @return ~
      */
     public static boolean getConfigParams(String preferenceName, String key, boolean defValue) {
-        SharedPreferences preferences = getPreference(preferenceName);
-        return preferences.getBoolean(key, defValue);
+        return getSnapshot(preferenceName).getBoolean(key, defValue);
     }
 
     /**
@@ -185,8 +312,7 @@ public class PrefUtil {
      * @return ~
      */
     public static String getConfigParams(String preferenceName, String key, String defValue) {
-        SharedPreferences preferences = getPreference(preferenceName);
-        return preferences.getString(key, defValue);
+        return getSnapshot(preferenceName).getString(key, defValue);
     }
 
     /**
@@ -197,9 +323,65 @@ public class PrefUtil {
      * @param value          ~
      */
     public static void setConfigParams(String preferenceName, String key, String value) {
-        SharedPreferences.Editor editor = getEditor(preferenceName);
-        editor.putString(key, value);
+        PrefWriteBehind writer = writeBehind;
+        if (writer != null) {
+            writer.put(preferenceName, key, value == null ? PrefWriteBehind.REMOVED : value);
+        } else {
+            SharedPreferences.Editor editor = getEditor(preferenceName);
+            editor.putString(key, value);
+            commit(editor, "PrefUtil.setConfigParams");
+        }
+        getSnapshot(preferenceName).put(key, value);
+    }
+
+    /**
+     * 读取缓存命中次数
+     */
+    public static long getCacheHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * 读取缓存未命中次数
+     */
+    public static long getCacheMissCount() {
+        return cache.getMissCount();
+    }
+
+    /**
+     * 清零读取缓存命中统计
+     */
+    public static void resetCacheStats() {
+        cache.resetStats();
+    }
+
+    /**
+     * 获取文件读取缓存，第一次获取时在后台预热
+     *
+     * @param preferenceName ~
+     * @return ~
+     */
+    private static PrefCache.Snapshot getSnapshot(String preferenceName) {
+        return cache.getSnapshot(preferenceName, PrefUtil::getPreference);
+    }
+
+    /**
+     * 同步写入磁盘，主线程调用时由{@link MainThreadWatchdog}检测耗时
+     */
+    private static void commit(SharedPreferences.Editor editor, String api) {
+        long token = MainThreadWatchdog.begin();
         editor.commit();
+        MainThreadWatchdog.end(api, token);
+    }
+
+    /**
+     * 获取还没写入磁盘的值
+     *
+     * @return null 没有待写入的值
+     */
+    private static Object peekPending(String preferenceName, String key) {
+        PrefWriteBehind writer = writeBehind;
+        return writer == null ? null : writer.peek(preferenceName, key);
     }
 
 }
\ No newline at end of file
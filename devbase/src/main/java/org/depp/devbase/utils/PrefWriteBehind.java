@@ -0,0 +1,162 @@
+package org.depp.devbase.utils;
+
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PrefUtil延迟批量写入
+ * <p>
+ * 写入先合并到每个preference文件的内存队列中，在后台线程延迟（最多flushDelayMs）后一次性commit。
+ * </p>
+ */
+final class PrefWriteBehind {
+
+    /**
+     * 标记Key已被删除
+     */
+    static final Object REMOVED = new Object();
+
+    interface EditorProvider {
+
+        SharedPreferences.Editor getEditor(String preferenceName);
+    }
+
+    private final ConcurrentHashMap<String, Batch> batches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final EditorProvider editorProvider;
+    private final long flushDelayMs;
+
+    PrefWriteBehind(EditorProvider editorProvider, long flushDelayMs) {
+        this.editorProvider = editorProvider;
+        this.flushDelayMs = flushDelayMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "PrefUtil-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 加入待写入队列，同一文件第一次写入时开始计时，后续写入不会推迟flush
+     *
+     * @param preferenceName ~
+     * @param key            ~
+     * @param value          值，{@link #REMOVED}表示删除
+     */
+    void put(final String preferenceName, String key, Object value) {
+        Batch batch = getBatch(preferenceName);
+        synchronized (batch) {
+            batch.pending.put(key, value);
+            if (!batch.scheduled) {
+                batch.scheduled = true;
+                scheduler.schedule(() -> flush(preferenceName), flushDelayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * 获取还没写入的值
+     *
+     * @return null 没有待写入的值，{@link #REMOVED} 已被删除
+     */
+    Object peek(String preferenceName, String key) {
+        Batch batch = batches.get(preferenceName);
+        if (batch == null) {
+            return null;
+        }
+        synchronized (batch) {
+            Object value = batch.pending.get(key);
+            if (value == null && batch.writing != null) {
+                value = batch.writing.get(key);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * 立即写入某个文件的所有待写入值，返回时已经写入磁盘
+     *
+     * @param preferenceName ~
+     */
+    void flush(String preferenceName) {
+        Batch batch = batches.get(preferenceName);
+        if (batch == null) {
+            return;
+        }
+        // 同一文件的flush串行执行，保证写入顺序
+        synchronized (batch.flushLock) {
+            Map<String, Object> changes;
+            synchronized (batch) {
+                batch.scheduled = false;
+                if (batch.pending.isEmpty()) {
+                    return;
+                }
+                changes = batch.pending;
+                batch.pending = new HashMap<>();
+                batch.writing = changes;
+            }
+            try {
+                SharedPreferences.Editor editor = editorProvider.getEditor(preferenceName);
+                for (Map.Entry<String, Object> change : changes.entrySet()) {
+                    putValue(editor, change.getKey(), change.getValue());
+                }
+                editor.commit();
+            } finally {
+                synchronized (batch) {
+                    batch.writing = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 立即写入所有文件的待写入值
+     */
+    void flushAll() {
+        for (String preferenceName : batches.keySet()) {
+            flush(preferenceName);
+        }
+    }
+
+    private Batch getBatch(String preferenceName) {
+        Batch batch = batches.get(preferenceName);
+        if (batch == null) {
+            Batch newBatch = new Batch();
+            batch = batches.putIfAbsent(preferenceName, newBatch);
+            if (batch == null) {
+                batch = newBatch;
+            }
+        }
+        return batch;
+    }
+
+    private static void putValue(SharedPreferences.Editor editor, String key, Object value) {
+        if (value == REMOVED) {
+            editor.remove(key);
+        } else if (value instanceof Long) {
+            editor.putLong(key, (Long) value);
+        } else if (value instanceof Integer) {
+            editor.putInt(key, (Integer) value);
+        } else if (value instanceof Float) {
+            editor.putFloat(key, (Float) value);
+        } else if (value instanceof Boolean) {
+            editor.putBoolean(key, (Boolean) value);
+        } else {
+            editor.putString(key, (String) value);
+        }
+    }
+
+    private static final class Batch {
+
+        final Object flushLock = new Object();
+        Map<String, Object> pending = new HashMap<>();
+        Map<String, Object> writing;
+        boolean scheduled;
+    }
+}
@@ -0,0 +1,137 @@
+package org.depp.devbase.adapter;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.ListUpdateCallback;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotDifferTest {
+
+    static final class Item {
+
+        final int id;
+        final String name;
+
+        Item(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    private final TestScheduler diffScheduler = new TestScheduler();
+    private final List<String> updates = new ArrayList<>();
+    private SnapshotDiffer<Item> differ;
+
+    @Before
+    public void setUp() {
+        ItemDiffCallback<Item> diffCallback = new ItemDiffCallback<Item>() {
+            @Override
+            public boolean areItemsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+                return oldItem.id == newItem.id;
+            }
+
+            @Override
+            public boolean areContentsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+                return oldItem.name.equals(newItem.name);
+            }
+
+            @Nullable
+            @Override
+            public Object getChangePayload(@NonNull Item oldItem, @NonNull Item newItem) {
+                return newItem.name;
+            }
+        };
+        ListUpdateCallback updateCallback = new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                updates.add("inserted " + position + " " + count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                updates.add("removed " + position + " " + count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                updates.add("moved " + fromPosition + " " + toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, @Nullable Object payload) {
+                Object value = payload instanceof SnapshotDiffer.ChangePayload ? ((SnapshotDiffer.ChangePayload) payload).payload : payload;
+                updates.add("changed " + position + " " + count + " " + value);
+            }
+        };
+        differ = new SnapshotDiffer<>(diffCallback, updateCallback, Schedulers.trampoline());
+        differ.setDiffScheduler(diffScheduler);
+    }
+
+    @Test
+    public void emptyListsSkipDiff() {
+        List<Item> items = Arrays.asList(new Item(1, "a"), new Item(2, "b"));
+        differ.submitList(items, null);
+        assertEquals(Collections.singletonList("inserted 0 2"), updates);
+        assertEquals(2, differ.getCurrentList().size());
+
+        differ.submitList(null, null);
+        assertEquals(Arrays.asList("inserted 0 2", "removed 0 2"), updates);
+        assertTrue(differ.getCurrentList().isEmpty());
+    }
+
+    @Test
+    public void dispatchesDiffWithPayload() {
+        differ.submitList(Arrays.asList(new Item(1, "a"), new Item(2, "b")), null);
+        updates.clear();
+
+        differ.submitList(Arrays.asList(new Item(1, "a"), new Item(2, "c"), new Item(3, "d")), null);
+        // 计算完成前仍然是旧的快照
+        assertEquals(2, differ.getCurrentList().size());
+        assertTrue(updates.isEmpty());
+
+        diffScheduler.triggerActions();
+        assertEquals(3, differ.getCurrentList().size());
+        assertTrue(updates.toString(), updates.contains("inserted 2 1"));
+        assertTrue(updates.toString(), updates.contains("changed 1 1 c"));
+    }
+
+    @Test
+    public void staleDiffIsDropped() {
+        differ.submitList(Arrays.asList(new Item(1, "a"), new Item(2, "b")), null);
+        updates.clear();
+
+        AtomicBoolean firstCommitted = new AtomicBoolean();
+        AtomicBoolean secondCommitted = new AtomicBoolean();
+        differ.submitList(Arrays.asList(new Item(1, "a"), new Item(2, "b"), new Item(3, "c")), () -> firstCommitted.set(true));
+        differ.submitList(Arrays.asList(new Item(0, "z"), new Item(1, "a"), new Item(2, "b")), () -> secondCommitted.set(true));
+        diffScheduler.triggerActions();
+
+        assertFalse(firstCommitted.get());
+        assertTrue(secondCommitted.get());
+        assertEquals(Collections.singletonList("inserted 0 1"), updates);
+        assertEquals(0, differ.getCurrentList().get(0).id);
+    }
+
+    @Test
+    public void snapshotIsNotAffectedBySubmittedList() {
+        List<Item> items = new ArrayList<>(Collections.singletonList(new Item(1, "a")));
+        differ.submitList(items, null);
+        items.add(new Item(2, "b"));
+        assertEquals(1, differ.getCurrentList().size());
+    }
+}
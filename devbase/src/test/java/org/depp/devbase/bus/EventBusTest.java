@@ -0,0 +1,152 @@
+package org.depp.devbase.bus;
+
+import android.support.annotation.NonNull;
+
+import com.trello.rxlifecycle2.LifecycleProvider;
+import com.trello.rxlifecycle2.LifecycleTransformer;
+import com.trello.rxlifecycle2.RxLifecycle;
+import com.trello.rxlifecycle2.android.ActivityEvent;
+import com.trello.rxlifecycle2.android.RxLifecycleAndroid;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.Observable;
+import io.reactivex.android.plugins.RxAndroidPlugins;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.BehaviorSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventBusTest {
+
+    static final class Provider implements LifecycleProvider<ActivityEvent> {
+
+        final BehaviorSubject<ActivityEvent> subject = BehaviorSubject.create();
+
+        @NonNull
+        @Override
+        public Observable<ActivityEvent> lifecycle() {
+            return subject.hide();
+        }
+
+        @NonNull
+        @Override
+        public <T> LifecycleTransformer<T> bindUntilEvent(@NonNull ActivityEvent event) {
+            return RxLifecycle.bindUntilEvent(subject, event);
+        }
+
+        @NonNull
+        @Override
+        public <T> LifecycleTransformer<T> bindToLifecycle() {
+            return RxLifecycleAndroid.bindActivity(subject);
+        }
+    }
+
+    private final EventBus bus = new EventBus();
+    private final List<Object> received = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        RxAndroidPlugins.setInitMainThreadSchedulerHandler(scheduler -> Schedulers.trampoline());
+        RxAndroidPlugins.setMainThreadSchedulerHandler(scheduler -> Schedulers.trampoline());
+    }
+
+    @After
+    public void tearDown() {
+        RxAndroidPlugins.reset();
+    }
+
+    @Test
+    public void dispatchesByExactType() {
+        bus.subscribe(null, String.class, received::add);
+        bus.subscribe(null, Object.class, event -> received.add("object"));
+
+        bus.post("a");
+        bus.post(1);
+        assertEquals(Collections.<Object>singletonList("a"), received);
+    }
+
+    @Test
+    public void disposeAndUnregisterStopDelivery() {
+        Object owner = new Object();
+        Disposable disposable = bus.subscribe(null, String.class, received::add);
+        bus.subscribe(owner, String.class, event -> received.add("owner " + event));
+
+        bus.post("a");
+        disposable.dispose();
+        bus.post("b");
+        bus.unregister(owner);
+        bus.post("c");
+
+        assertEquals(Arrays.<Object>asList("a", "owner a", "owner b"), received);
+        assertTrue(disposable.isDisposed());
+    }
+
+    @Test
+    public void stickyEventIsDeliveredOnSubscribe() {
+        bus.postSticky("last");
+        bus.subscribe(null, String.class, null, false, event -> received.add("plain " + event));
+        bus.subscribe(null, String.class, null, true, received::add);
+        assertEquals(Collections.<Object>singletonList("last"), received);
+        assertEquals("last", bus.getSticky(String.class));
+
+        bus.removeSticky(String.class);
+        assertNull(bus.getSticky(String.class));
+    }
+
+    @Test
+    public void schedulerSubscriberIsCalledOnWorker() {
+        TestScheduler scheduler = new TestScheduler();
+        bus.subscribe(null, String.class, scheduler, false, received::add);
+
+        bus.post("a");
+        assertTrue(received.isEmpty());
+        scheduler.triggerActions();
+        assertEquals(Collections.<Object>singletonList("a"), received);
+    }
+
+    @Test
+    public void pausedSubscriptionKeepsOnlyLatestEvent() {
+        Provider provider = new Provider();
+        provider.subject.onNext(ActivityEvent.CREATE);
+        provider.subject.onNext(ActivityEvent.RESUME);
+        bus.subscribe(provider, String.class, false, received::add);
+
+        bus.post("a");
+        provider.subject.onNext(ActivityEvent.PAUSE);
+        provider.subject.onNext(ActivityEvent.STOP);
+        bus.post("b");
+        bus.post("c");
+        assertEquals(Collections.<Object>singletonList("a"), received);
+
+        provider.subject.onNext(ActivityEvent.START);
+        provider.subject.onNext(ActivityEvent.RESUME);
+        assertEquals(Arrays.<Object>asList("a", "c"), received);
+
+        provider.subject.onNext(ActivityEvent.DESTROY);
+        bus.post("d");
+        assertEquals(Arrays.<Object>asList("a", "c"), received);
+    }
+
+    @Test
+    public void subscriptionWithoutPauseIsAlwaysCalled() {
+        Provider provider = new Provider();
+        provider.subject.onNext(ActivityEvent.PAUSE);
+        bus.subscribe(provider, String.class, false, false, received::add);
+
+        bus.post("a");
+        bus.post("b");
+        assertEquals(Arrays.<Object>asList("a", "b"), received);
+    }
+}
@@ -0,0 +1,63 @@
+package org.depp.devbase.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void emptyHistogramReturnsZero() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 20; i++) {
+            histogram.record(i);
+        }
+        assertEquals(20, histogram.getCount());
+        assertEquals(20, histogram.getMax());
+        assertEquals(10.5, histogram.getMean(), 0.0001);
+        assertEquals(10, histogram.getPercentile(50));
+        assertEquals(19, histogram.getPercentile(95));
+        assertEquals(20, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void largeValuesStayWithinOneSixteenth() {
+        for (long value = 32; value < (1L << 40); value = value * 3 / 2 + 7) {
+            int index = Histogram.indexOf(value);
+            long upper = Histogram.upperBoundOf(index);
+            assertTrue(value + " > " + upper, value <= upper);
+            assertTrue(value + " -> " + upper, upper - value <= value / 16);
+            // 桶按值递增
+            assertTrue(index >= Histogram.indexOf(value - 1));
+        }
+    }
+
+    @Test
+    public void percentileIsCappedByMax() {
+        Histogram histogram = new Histogram();
+        histogram.record(1000);
+        assertEquals(1000, histogram.getPercentile(99));
+        histogram.record(-5);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        Histogram histogram = new Histogram();
+        histogram.record(42);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+}
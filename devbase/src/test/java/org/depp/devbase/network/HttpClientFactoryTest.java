@@ -0,0 +1,87 @@
+package org.depp.devbase.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Call;
+import retrofit2.http.GET;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class HttpClientFactoryTest {
+
+    interface Api {
+
+        @GET("hello")
+        Call<ResponseBody> hello();
+    }
+
+    interface OtherApi {
+
+        @GET("other")
+        Call<ResponseBody> other();
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private HttpClientFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        factory = new HttpClientFactory.Builder()
+                .setCacheDir(folder.newFolder("http"))
+                .setMaxRequestsPerHost(3)
+                .setMaxIdleConnections(2)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void servicesShareOneClient() {
+        String baseUrl = server.url("/").toString();
+        assertSame(factory.getClient(), factory.getRetrofit(baseUrl).callFactory());
+        assertSame(factory.getClient(), factory.getRetrofit(server.url("/v2/").toString()).callFactory());
+        assertSame(factory.create(baseUrl, Api.class), factory.create(baseUrl, Api.class));
+        factory.create(baseUrl, OtherApi.class);
+        assertSame(factory.getRetrofit(baseUrl), factory.getRetrofit(baseUrl));
+    }
+
+    @Test
+    public void dispatcherAndPoolAreShared() {
+        OkHttpClient client = factory.getClient();
+        assertEquals(3, client.dispatcher().getMaxRequestsPerHost());
+        OkHttpClient derived = factory.newClientBuilder().build();
+        assertSame(client.dispatcher(), derived.dispatcher());
+        assertSame(client.connectionPool(), derived.connectionPool());
+        assertSame(client.cache(), derived.cache());
+    }
+
+    @Test
+    public void cacheableResponsesAreServedFromDisk() throws Exception {
+        server.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "max-age=60")
+                .setBody("cached"));
+        Api api = factory.create(server.url("/").toString(), Api.class);
+
+        assertEquals("cached", api.hello().execute().body().string());
+        assertEquals("cached", api.hello().execute().body().string());
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, factory.getClient().cache().hitCount());
+    }
+}
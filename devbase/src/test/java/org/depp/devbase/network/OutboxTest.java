@@ -0,0 +1,202 @@
+package org.depp.devbase.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.android.plugins.RxAndroidPlugins;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class OutboxTest {
+
+    private static final MediaType TEXT = MediaType.parse("text/plain");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicBoolean offline = new AtomicBoolean();
+    private MockWebServer server;
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        RxAndroidPlugins.setInitMainThreadSchedulerHandler(scheduler -> Schedulers.trampoline());
+        RxAndroidPlugins.setMainThreadSchedulerHandler(scheduler -> Schedulers.trampoline());
+        server = new MockWebServer();
+        server.start();
+        directory = folder.newFolder("outbox");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        RxAndroidPlugins.reset();
+    }
+
+    @Test
+    public void queuedWhileOfflineAndReplayedInOrder() throws Exception {
+        // 退避时间足够长，只有drainNow会触发重放
+        Outbox outbox = new Outbox(directory, null, 60_000, 60_000);
+        OkHttpClient client = newClient(outbox);
+        outbox.start(client);
+
+        offline.set(true);
+        String[] ids = new String[3];
+        for (int i = 0; i < ids.length; i++) {
+            try (Response response = client.newCall(post("/" + i, "body" + i)).execute()) {
+                assertEquals(204, response.code());
+                ids[i] = response.header(Outbox.HEADER_OUTBOX_ID);
+                assertNotNull(ids[i]);
+            }
+        }
+        assertEquals(3, outbox.getDepth());
+        assertEquals(0, server.getRequestCount());
+
+        offline.set(false);
+        for (int i = 0; i < ids.length; i++) {
+            server.enqueue(new MockResponse());
+        }
+        outbox.drainNow();
+        awaitCompleted(outbox, 3);
+
+        for (int i = 0; i < ids.length; i++) {
+            RecordedRequest recorded = server.takeRequest();
+            assertEquals("/" + i, recorded.getPath());
+            assertEquals("body" + i, recorded.getBody().readUtf8());
+            assertEquals(ids[i], recorded.getHeader(Outbox.HEADER_IDEMPOTENCY_KEY));
+            assertNull(recorded.getHeader(Outbox.HEADER_OUTBOX));
+        }
+        assertEquals(0, outbox.getDepth());
+    }
+
+    @Test
+    public void reloadedAfterProcessKill() throws Exception {
+        Outbox killed = new Outbox(directory, null, 60_000, 60_000);
+        String first = killed.enqueue(post("/a", "a"));
+        String second = killed.enqueue(post("/b", "b").newBuilder()
+                .header(Outbox.HEADER_IDEMPOTENCY_KEY, "client-key")
+                .build());
+        assertEquals("client-key", second);
+
+        // 新实例只通过队列目录恢复
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse());
+        Outbox outbox = new Outbox(directory, null, 60_000, 60_000);
+        assertEquals(2, outbox.getDepth());
+        outbox.start(newClient(outbox));
+        awaitCompleted(outbox, 2);
+
+        RecordedRequest a = server.takeRequest();
+        assertEquals("/a", a.getPath());
+        assertEquals("POST", a.getMethod());
+        assertEquals("a", a.getBody().readUtf8());
+        assertEquals(first, a.getHeader(Outbox.HEADER_IDEMPOTENCY_KEY));
+        RecordedRequest b = server.takeRequest();
+        assertEquals("/b", b.getPath());
+        assertEquals("client-key", b.getHeader(Outbox.HEADER_IDEMPOTENCY_KEY));
+    }
+
+    @Test
+    public void clientErrorIsNotRetried() throws Exception {
+        Outbox outbox = new Outbox(directory, null, 10, 10);
+        outbox.enqueue(post("/bad", "x"));
+        server.enqueue(new MockResponse().setResponseCode(400));
+        server.enqueue(new MockResponse());
+
+        outbox.start(newClient(outbox));
+        Outbox.State state = outbox.observeState()
+                .filter(s -> s.dropped == 1)
+                .timeout(5, TimeUnit.SECONDS)
+                .blockingFirst();
+        assertEquals(0, state.depth);
+        assertEquals(0, state.completed);
+
+        outbox.drainNow();
+        assertEquals("/bad", server.takeRequest().getPath());
+        assertNull(server.takeRequest(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void serverErrorIsRetried() throws Exception {
+        Outbox outbox = new Outbox(directory, null, 10, 10);
+        outbox.enqueue(post("/retry", "x"));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse());
+
+        outbox.start(newClient(outbox));
+        awaitCompleted(outbox, 1);
+        assertEquals(2, server.getRequestCount());
+        assertEquals(server.takeRequest().getHeader(Outbox.HEADER_IDEMPOTENCY_KEY),
+                server.takeRequest().getHeader(Outbox.HEADER_IDEMPOTENCY_KEY));
+    }
+
+    @Test
+    public void canceledCallIsNotQueued() throws Exception {
+        Outbox outbox = new Outbox(directory, null, 60_000, 60_000);
+        OkHttpClient client = newClient(outbox);
+        outbox.start(client);
+        server.enqueue(new MockResponse().setHeadersDelay(10, TimeUnit.SECONDS));
+
+        final Call call = client.newCall(post("/slow", "x"));
+        Thread thread = new Thread(() -> {
+            try {
+                call.execute().close();
+            } catch (IOException ignored) {
+            }
+        });
+        thread.start();
+        server.takeRequest();
+        call.cancel();
+        thread.join(5000);
+
+        assertEquals(0, outbox.getDepth());
+    }
+
+    private OkHttpClient newClient(Outbox outbox) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(outbox.interceptor())
+                .addInterceptor(chain -> {
+                    if (offline.get()) {
+                        throw new IOException("offline");
+                    }
+                    return chain.proceed(chain.request());
+                })
+                .build();
+    }
+
+    private Request post(String path, String body) {
+        return new Request.Builder()
+                .url(server.url(path))
+                .header(Outbox.HEADER_OUTBOX, "1")
+                .post(RequestBody.create(TEXT, body))
+                .build();
+    }
+
+    private static void awaitCompleted(Outbox outbox, int count) {
+        outbox.observeState()
+                .filter(state -> state.completed == count && !state.draining)
+                .timeout(5, TimeUnit.SECONDS)
+                .blockingFirst();
+    }
+}
@@ -0,0 +1,151 @@
+package org.depp.devbase.network;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.subscribers.TestSubscriber;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResponseStreamsTest {
+
+    static final class Item {
+
+        int id;
+    }
+
+    private final Gson gson = new Gson();
+    private final OkHttpClient client = new OkHttpClient();
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void nestedPathSkipsOtherFields() {
+        server.enqueue(new MockResponse().setBody(
+                "{\"meta\":{\"items\":[{\"id\":0}]},\"data\":{\"total\":2,\"items\":[{\"id\":1},null,{\"id\":2}]}}"));
+
+        TestSubscriber<Item> subscriber = ResponseStreams.<Item>jsonArray(bodySupplier(null), gson, Item.class, "data.items").test();
+
+        subscriber.assertComplete();
+        subscriber.assertValueCount(2);
+        assertEquals(1, subscriber.values().get(0).id);
+        assertEquals(2, subscriber.values().get(1).id);
+    }
+
+    @Test
+    public void missingFieldFailsAndClosesBody() {
+        server.enqueue(new MockResponse().setBody("{\"data\":{\"list\":[]}}"));
+        AtomicBoolean closed = new AtomicBoolean();
+
+        ResponseStreams.<Item>jsonArray(bodySupplier(closed), gson, Item.class, "data.items").test()
+                .assertError(JsonParseException.class);
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void cancelClosesBody() {
+        server.enqueue(new MockResponse().setBody(array(1000)));
+        AtomicBoolean closed = new AtomicBoolean();
+
+        TestSubscriber<Item> subscriber = ResponseStreams.<Item>jsonArray(bodySupplier(closed), gson, Item.class, "items").test(1);
+        subscriber.assertValueCount(1);
+        assertFalse(closed.get());
+
+        subscriber.cancel();
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void emitsOnlyWhatIsRequested() {
+        server.enqueue(new MockResponse().setBody(array(1000)));
+
+        TestSubscriber<Item> subscriber = ResponseStreams.<Item>jsonArray(bodySupplier(null), gson, Item.class, "items").test(0);
+        subscriber.assertNoValues();
+
+        subscriber.request(1);
+        subscriber.assertValueCount(1);
+        subscriber.request(2);
+        subscriber.assertValueCount(3);
+        assertEquals(2, subscriber.values().get(2).id);
+        subscriber.assertNotComplete();
+
+        subscriber.request(Long.MAX_VALUE);
+        subscriber.assertValueCount(1000);
+        subscriber.assertComplete();
+    }
+
+    private static String array(int count) {
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * @param closed 响应体关闭时设为true，可为null
+     */
+    private Callable<ResponseBody> bodySupplier(final AtomicBoolean closed) {
+        return () -> {
+            final ResponseBody body = client.newCall(new Request.Builder().url(server.url("/")).build()).execute().body();
+            if (closed == null) {
+                return body;
+            }
+            final BufferedSource source = Okio.buffer(new ForwardingSource(body.source()) {
+                @Override
+                public void close() throws IOException {
+                    closed.set(true);
+                    super.close();
+                }
+            });
+            return new ResponseBody() {
+                @Override
+                public MediaType contentType() {
+                    return body.contentType();
+                }
+
+                @Override
+                public long contentLength() {
+                    return body.contentLength();
+                }
+
+                @Override
+                public BufferedSource source() {
+                    return source;
+                }
+            };
+        };
+    }
+}
@@ -0,0 +1,165 @@
+package org.depp.devbase.paging;
+
+import android.databinding.ObservableList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.Observable;
+import io.reactivex.android.plugins.RxAndroidPlugins;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PagedListTest {
+
+    private static final int PAGE_SIZE = 10;
+    private static final int PAGE_COUNT = 6;
+
+    private final TestScheduler mainScheduler = new TestScheduler();
+    private final Map<Integer, Integer> loadCounts = new HashMap<>();
+    /**
+     * 第二次加载某页时返回的数量，用于模拟重新加载后数量变化
+     */
+    private final Map<Integer, Integer> reloadSizes = new HashMap<>();
+    private final List<String> changes = new ArrayList<>();
+    private PagedList<Integer, String> list;
+
+    @Before
+    public void setUp() {
+        RxJavaPlugins.setIoSchedulerHandler(scheduler -> Schedulers.trampoline());
+        RxAndroidPlugins.setInitMainThreadSchedulerHandler(scheduler -> mainScheduler);
+        RxAndroidPlugins.setMainThreadSchedulerHandler(scheduler -> mainScheduler);
+        list = new PagedList<Integer, String>((key, pageSize) -> Observable.fromCallable(() -> load(key, pageSize)))
+                .setPageSize(PAGE_SIZE)
+                .setPrefetchDistance(1)
+                .setMaxPages(3);
+        list.addOnListChangedCallback(new ObservableList.OnListChangedCallback<ObservableList<String>>() {
+            @Override
+            public void onChanged(ObservableList<String> sender) {
+                changes.add("changed");
+            }
+
+            @Override
+            public void onItemRangeChanged(ObservableList<String> sender, int positionStart, int itemCount) {
+                changes.add("changed " + positionStart + " " + itemCount);
+            }
+
+            @Override
+            public void onItemRangeInserted(ObservableList<String> sender, int positionStart, int itemCount) {
+                changes.add("inserted " + positionStart + " " + itemCount);
+            }
+
+            @Override
+            public void onItemRangeMoved(ObservableList<String> sender, int fromPosition, int toPosition, int itemCount) {
+                changes.add("moved " + fromPosition + " " + toPosition + " " + itemCount);
+            }
+
+            @Override
+            public void onItemRangeRemoved(ObservableList<String> sender, int positionStart, int itemCount) {
+                changes.add("removed " + positionStart + " " + itemCount);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        RxJavaPlugins.reset();
+        RxAndroidPlugins.reset();
+    }
+
+    private Page<Integer, String> load(Integer key, int pageSize) {
+        int page = key == null ? 0 : key;
+        Integer count = loadCounts.get(page);
+        loadCounts.put(page, count == null ? 1 : count + 1);
+        int size = count != null && reloadSizes.containsKey(page) ? reloadSizes.get(page) : pageSize;
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            items.add(page + "-" + i);
+        }
+        return new Page<>(items, page + 1 < PAGE_COUNT ? page + 1 : null);
+    }
+
+    /**
+     * 滚动到末尾直到全部加载
+     */
+    private void loadAll() {
+        list.start();
+        mainScheduler.triggerActions();
+        while (!list.isEndReached()) {
+            list.loadAround(list.size() - 1, list.size() - 1);
+            mainScheduler.triggerActions();
+        }
+        assertEquals(PAGE_SIZE * PAGE_COUNT, list.size());
+    }
+
+    @Test
+    public void pagesFarFromVisibleRangeAreDropped() {
+        loadAll();
+        // 最后3页保留
+        assertNull(list.get(0));
+        assertNull(list.get(25));
+        assertEquals("3-0", list.get(30));
+        assertEquals("5-9", list.get(59));
+    }
+
+    @Test
+    public void allVisiblePagesAreKept() {
+        loadAll();
+        // 可见范围跨3页，等于maxPages，全部保留
+        list.loadAround(15, 35);
+        mainScheduler.triggerActions();
+        assertEquals("1-5", list.get(15));
+        assertEquals("2-5", list.get(25));
+        assertEquals("3-5", list.get(35));
+        assertNull(list.get(5));
+        assertNull(list.get(45));
+    }
+
+    @Test
+    public void remainingSlotsAreSplitAroundVisiblePages() {
+        loadAll();
+        list.loadAround(25, 25);
+        mainScheduler.triggerActions();
+        assertNull(list.get(5));
+        assertNotNull(list.get(15));
+        assertNotNull(list.get(25));
+        assertNotNull(list.get(35));
+        assertNull(list.get(45));
+    }
+
+    @Test
+    public void replaceShiftsFollowingPages() {
+        loadAll();
+        reloadSizes.put(0, 8);
+        changes.clear();
+        list.loadAround(0, 0);
+        mainScheduler.triggerActions();
+
+        assertEquals(PAGE_SIZE * PAGE_COUNT - 2, list.size());
+        assertEquals("0-7", list.get(7));
+        assertEquals("1-0", list.get(8));
+        assertTrue(changes.toString(), changes.contains("changed 0 8"));
+        assertTrue(changes.toString(), changes.contains("removed 8 2"));
+    }
+
+    @Test
+    public void refreshDropsPendingResults() {
+        list.start();
+        list.refresh();
+        mainScheduler.triggerActions();
+        // 第一次start的结果被丢弃，只有refresh的一页
+        assertEquals(PAGE_SIZE, list.size());
+    }
+}
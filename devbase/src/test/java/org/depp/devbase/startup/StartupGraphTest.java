@@ -0,0 +1,119 @@
+package org.depp.devbase.startup;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StartupGraphTest {
+
+    static class Base extends StartupComponent {
+
+        @Override
+        public void create(@NonNull Context context) {
+        }
+    }
+
+    static class Config extends Base {
+    }
+
+    static class Network extends Base {
+
+        @NonNull
+        @Override
+        public List<Class<? extends StartupComponent>> getDependencies() {
+            return Collections.singletonList(Config.class);
+        }
+    }
+
+    static class Analytics extends Base {
+
+        @NonNull
+        @Override
+        public List<Class<? extends StartupComponent>> getDependencies() {
+            return Arrays.asList(Config.class, Network.class);
+        }
+    }
+
+    static class CycleA extends Base {
+
+        @NonNull
+        @Override
+        public List<Class<? extends StartupComponent>> getDependencies() {
+            return Collections.singletonList(CycleC.class);
+        }
+    }
+
+    static class CycleB extends Base {
+
+        @NonNull
+        @Override
+        public List<Class<? extends StartupComponent>> getDependencies() {
+            return Collections.singletonList(CycleA.class);
+        }
+    }
+
+    static class CycleC extends Base {
+
+        @NonNull
+        @Override
+        public List<Class<? extends StartupComponent>> getDependencies() {
+            return Collections.singletonList(CycleB.class);
+        }
+    }
+
+    static class SelfDependent extends Base {
+
+        @NonNull
+        @Override
+        public List<Class<? extends StartupComponent>> getDependencies() {
+            return Collections.singletonList(SelfDependent.class);
+        }
+    }
+
+    @Test
+    public void buildsEdgesAndRemainingCounts() {
+        StartupGraph graph = StartupGraph.build(Arrays.asList(new Analytics(), new Network(), new Config()));
+        assertEquals(3, graph.nodes.size());
+        StartupGraph.Node analytics = graph.nodes.get(0);
+        StartupGraph.Node network = graph.nodes.get(1);
+        StartupGraph.Node config = graph.nodes.get(2);
+        assertEquals(2, analytics.remaining.get());
+        assertEquals(1, network.remaining.get());
+        assertEquals(0, config.remaining.get());
+        assertEquals(Arrays.asList(analytics, network), config.dependents);
+    }
+
+    @Test
+    public void detectsCycleAndNamesPath() {
+        try {
+            StartupGraph.build(Arrays.asList(new Config(), new CycleA(), new CycleB(), new CycleC()));
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("CycleA -> CycleC -> CycleB -> CycleA"));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void detectsSelfDependency() {
+        StartupGraph.build(Collections.singletonList(new SelfDependent()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingDependency() {
+        StartupGraph.build(Collections.singletonList(new Network()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDuplicateComponent() {
+        StartupGraph.build(Arrays.asList(new Config(), new Config()));
+    }
+}
@@ -0,0 +1,150 @@
+package org.depp.devbase.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MappedPreferencesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void valuesSurviveReopen() throws Exception {
+        File file = new File(folder.getRoot(), "prefs.mmap");
+        MappedPreferences preferences = new MappedPreferences(file, null);
+        assertTrue(preferences.edit()
+                .putString("string", "中文")
+                .putInt("int", 42)
+                .putLong("long", Long.MAX_VALUE)
+                .putFloat("float", 1.5f)
+                .putBoolean("boolean", true)
+                .putStringSet("set", new HashSet<>(Arrays.asList("a", "b")))
+                .commit());
+        preferences.edit().putString("removed", "x").commit();
+        preferences.edit().remove("removed").commit();
+
+        MappedPreferences reopened = new MappedPreferences(file, null);
+        assertEquals("中文", reopened.getString("string", null));
+        assertEquals(42, reopened.getInt("int", 0));
+        assertEquals(Long.MAX_VALUE, reopened.getLong("long", 0));
+        assertEquals(1.5f, reopened.getFloat("float", 0), 0);
+        assertTrue(reopened.getBoolean("boolean", false));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), reopened.getStringSet("set", null));
+        assertFalse(reopened.contains("removed"));
+    }
+
+    @Test
+    public void initialValuesOnlyUsedForNewFile() throws Exception {
+        File file = new File(folder.getRoot(), "prefs.mmap");
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("migrated", "yes");
+        new MappedPreferences(file, legacy);
+
+        legacy.put("migrated", "again");
+        MappedPreferences reopened = new MappedPreferences(file, legacy);
+        assertEquals("yes", reopened.getString("migrated", null));
+    }
+
+    @Test
+    public void clearIsReplayed() throws Exception {
+        File file = new File(folder.getRoot(), "prefs.mmap");
+        MappedPreferences preferences = new MappedPreferences(file, null);
+        preferences.edit().putString("a", "1").putString("b", "2").commit();
+        preferences.edit().clear().putString("c", "3").commit();
+
+        MappedPreferences reopened = new MappedPreferences(file, null);
+        assertEquals(1, reopened.getAll().size());
+        assertEquals("3", reopened.getString("c", null));
+    }
+
+    @Test
+    public void tornTailIsDiscarded() throws Exception {
+        File file = new File(folder.getRoot(), "prefs.mmap");
+        MappedPreferences preferences = new MappedPreferences(file, null);
+        preferences.edit().putString("first", "kept").commit();
+        preferences.edit().putString("second", "torn").commit();
+
+        // 模拟最后一条记录写入中途被杀：修改最后一个非0字节，CRC校验失败
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long position = raf.length() - 1;
+            raf.seek(position);
+            while (position > 0 && raf.readByte() == 0) {
+                position--;
+                raf.seek(position);
+            }
+            raf.seek(position);
+            byte last = raf.readByte();
+            raf.seek(position);
+            raf.writeByte(last ^ 0xFF);
+        }
+
+        MappedPreferences recovered = new MappedPreferences(file, null);
+        assertEquals("kept", recovered.getString("first", null));
+        assertNull(recovered.getString("second", null));
+
+        // 不完整的记录被清掉后可以继续追加
+        recovered.edit().putString("third", "after").commit();
+        MappedPreferences reopened = new MappedPreferences(file, null);
+        assertEquals("kept", reopened.getString("first", null));
+        assertEquals("after", reopened.getString("third", null));
+        assertNull(reopened.getString("second", null));
+    }
+
+    @Test
+    public void compactionKeepsLatestValuesAndBoundsFile() throws Exception {
+        File file = new File(folder.getRoot(), "prefs.mmap");
+        MappedPreferences preferences = new MappedPreferences(file, null);
+        char[] chars = new char[1024];
+        Arrays.fill(chars, 'x');
+        String large = new String(chars);
+        for (int i = 0; i < 500; i++) {
+            preferences.edit()
+                    .putString("large", large + i)
+                    .putInt("counter", i)
+                    .commit();
+        }
+        // 500条1KB的记录，不压缩的话至少500KB
+        assertTrue("file length " + file.length(), file.length() < 64 * 1024);
+
+        MappedPreferences reopened = new MappedPreferences(file, null);
+        assertEquals(large + 499, reopened.getString("large", null));
+        assertEquals(499, reopened.getInt("counter", 0));
+        assertEquals(2, reopened.getAll().size());
+    }
+
+    @Test
+    public void readOnlyKeepsValuesAndRejectsWrites() throws Exception {
+        File file = new File(folder.getRoot(), "prefs.mmap");
+        MappedPreferences preferences = new MappedPreferences(file, null);
+        preferences.edit().putString("a", "1").putInt("b", 2).commit();
+        preferences.edit().remove("b").commit();
+
+        MappedPreferences readOnly = MappedPreferences.readOnly(file);
+        assertEquals("1", readOnly.getString("a", null));
+        assertFalse(readOnly.contains("b"));
+        assertFalse(readOnly.edit().putString("a", "changed").commit());
+        assertEquals("1", readOnly.getString("a", null));
+        assertEquals("1", new MappedPreferences(file, null).getString("a", null));
+    }
+
+    @Test
+    public void readOnlyOfUnreadableFileIsEmpty() throws Exception {
+        File file = new File(folder.getRoot(), "missing.mmap");
+        MappedPreferences readOnly = MappedPreferences.readOnly(file);
+        assertTrue(readOnly.getAll().isEmpty());
+        assertFalse(file.exists());
+    }
+}